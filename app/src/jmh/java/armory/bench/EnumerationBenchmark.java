@@ -0,0 +1,76 @@
+package armory.bench;
+
+import armory.Armory;
+import armory.BuildEngine;
+import armory.types.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks enumerating every legal suit of a synthetic inventory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumerationBenchmark {
+    //-------------------------------------------------------------------------
+    // State
+
+    @State(Scope.Benchmark)
+    public static class Inventory {
+        @Param({"10", "25", "50", "100"})
+        public int piecesPerSlot;
+
+        @Param({"0.0", "0.1", "0.25"})
+        public double exoticRatio;
+
+        BuildEngine engine;
+
+        @Setup
+        public void setup() {
+            engine = new BuildEngine(
+                Inventories.synthetic(piecesPerSlot, exoticRatio, 1L));
+        }
+    }
+
+    // Armory.makeSuits holds every suit in memory, and so is only run on
+    // the smaller inventories.
+    @State(Scope.Benchmark)
+    public static class SmallInventory {
+        @Param({"10", "25"})
+        public int piecesPerSlot;
+
+        @Param({"0.0", "0.1", "0.25"})
+        public double exoticRatio;
+
+        List<Armor> pieces;
+
+        @Setup
+        public void setup() {
+            pieces = Inventories.synthetic(piecesPerSlot, exoticRatio, 1L);
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Benchmarks
+
+    @Benchmark
+    public void forEachHandle(Inventory state, Blackhole blackhole) {
+        state.engine.forEachHandle(blackhole::consume);
+    }
+
+    @Benchmark
+    public void forEachSuit(Inventory state, Blackhole blackhole) {
+        state.engine.forEachSuit(blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Suit> makeSuits(SmallInventory state) {
+        return Armory.makeSuits(state.pieces);
+    }
+}
@@ -0,0 +1,95 @@
+package armory.bench;
+
+import armory.VaultGenerator;
+import armory.types.*;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * The inventories the benchmarks run over: the armory and CSV files
+ * checked in at the project root, and synthetic inventories with a given
+ * number of pieces per slot and share of exotics.
+ */
+public final class Inventories {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    // The system property giving the directory of the checked-in files
+    private static final String DATA_PROPERTY = "armory.data";
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    private Inventories() {
+        // Not instantiable
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Gets a file checked in at the project root.
+     * @param name The file's name
+     * @return The file
+     * @throws IllegalStateException if the file does not exist
+     */
+    public static File file(String name) {
+        var file = new File(System.getProperty(DATA_PROPERTY, "."), name);
+
+        if (!file.isFile()) {
+            throw new IllegalStateException("Missing benchmark data: " +
+                file + "; set -D" + DATA_PROPERTY + " to the project root.");
+        }
+
+        return file;
+    }
+
+    /**
+     * Makes a synthetic inventory with {@link VaultGenerator}.  Each type
+     * has the given number of pieces, of which the given share are exotic.
+     * The same arguments always make the same inventory.
+     * @param piecesPerSlot The number of pieces of each type
+     * @param exoticRatio The share of each type's pieces that are exotic
+     * @param seed The random seed
+     * @return The pieces
+     */
+    public static List<Armor> synthetic(
+        int piecesPerSlot,
+        double exoticRatio,
+        long seed
+    ) {
+        var counts = new EnumMap<Type,Integer>(Type.class);
+        Type.forEach(type -> counts.put(type, piecesPerSlot));
+
+        return new VaultGenerator(seed)
+            .generate(counts, exoticRatio, CharacterClass.WARLOCK, 0)
+            .pieces();
+    }
+
+    /**
+     * Gets minimum stats of the given strictness for the pieces: each
+     * minimum is the strictness times the mean of that stat over all
+     * four-piece suits.  0.0 accepts every suit; 1.0 requires an average
+     * suit in every stat.
+     * @param pieces The pieces
+     * @param strictness The strictness
+     * @return The minimum stats
+     */
+    public static StatMap minStats(List<Armor> pieces, double strictness) {
+        var types = Type.values().length;
+        var minStats = new StatMap();
+
+        for (var stat : Stat.values()) {
+            var mean = pieces.stream()
+                .mapToInt(piece -> piece.get(stat))
+                .average()
+                .orElse(0.0);
+
+            minStats.put(stat, (int)Math.round(strictness * types * mean));
+        }
+
+        return minStats;
+    }
+}
@@ -0,0 +1,73 @@
+package armory.bench;
+
+import armory.Armory;
+import armory.BuildEngine;
+import armory.types.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks making, scoring, sorting, and ranking the suits of the
+ * checked-in armory files, with each file's own weights and minimums.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InventoryBenchmark {
+    //-------------------------------------------------------------------------
+    // Parameters
+
+    @Param({"hunter.dat", "strand-hunter.dat", "solar-warlock.dat"})
+    public String name;
+
+    //-------------------------------------------------------------------------
+    // State
+
+    private Armory armory;
+    private List<Suit> suits;
+    private BuildEngine engine;
+
+    @Setup
+    public void setup() {
+        armory = new Armory(Inventories.file(name));
+        suits = Armory.makeSuits(armory.getPieces());
+        engine = new BuildEngine(armory.getPieces());
+    }
+
+    //-------------------------------------------------------------------------
+    // Benchmarks
+
+    @Benchmark
+    public List<Suit> makeSuits() {
+        return Armory.makeSuits(armory.getPieces());
+    }
+
+    @Benchmark
+    public void weightedSum(Blackhole blackhole) {
+        var weights = armory.getWeights();
+
+        for (var suit : suits) {
+            blackhole.consume(suit.weightedSum(weights));
+        }
+    }
+
+    // Ranks every suit the way the build tool did before BuildEngine.
+    @Benchmark
+    public List<Suit> sortSuits() {
+        var sorted = new ArrayList<>(suits);
+        sorted.sort(new SuitComparator(armory.getWeights()).reversed());
+        return sorted;
+    }
+
+    @Benchmark
+    public List<Suit> best() {
+        return engine.best(armory.getWeights(), armory.getMinStats(), 10);
+    }
+}
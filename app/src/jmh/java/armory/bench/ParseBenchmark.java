@@ -0,0 +1,83 @@
+package armory.bench;
+
+import armory.Armory;
+import armory.util.CSVReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing the checked-in armory files and DIM CSV files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    //-------------------------------------------------------------------------
+    // State
+
+    @State(Scope.Benchmark)
+    public static class ArmoryFile {
+        @Param({"hunter.dat", "strand-hunter.dat", "solar-warlock.dat"})
+        public String name;
+
+        File file;
+
+        @Setup
+        public void setup() {
+            file = Inventories.file(name);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvFile {
+        @Param({"destinyArmor.csv", "destinyArmor20230323.csv"})
+        public String name;
+
+        @Param({"1", "4"})
+        public int threads;
+
+        File file;
+
+        @Setup
+        public void setup() {
+            file = Inventories.file(name);
+        }
+    }
+
+    // Counts the rows it is given.
+    static class RowCounter implements CSVReader.RowHandler {
+        int rows = 0;
+
+        @Override
+        public void handle(CSVReader.Row row) {
+            rows++;
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Benchmarks
+
+    // Parses the text armory file; any snapshot is ignored.
+    @Benchmark
+    public Armory parseArmory(ArmoryFile state) {
+        return new Armory(state.file);
+    }
+
+    @Benchmark
+    public int parseCsv(CsvFile state) throws Exception {
+        if (state.threads == 1) {
+            var counter = new RowCounter();
+            CSVReader.read(state.file, counter);
+            return counter.rows;
+        }
+
+        return CSVReader.read(state.file, state.threads, RowCounter::new)
+            .stream()
+            .mapToInt(counter -> counter.rows)
+            .sum();
+    }
+}
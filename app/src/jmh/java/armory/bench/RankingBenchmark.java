@@ -0,0 +1,68 @@
+package armory.bench;
+
+import armory.BuildEngine;
+import armory.types.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks finding the best suits of a synthetic inventory, by
+ * inventory size, share of exotics, minimum-stat strictness, and search.
+ * See {@link Inventories#minStats(List, double)} for the strictness.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+    //-------------------------------------------------------------------------
+    // Parameters
+
+    @Param({"10", "25", "50", "100"})
+    public int piecesPerSlot;
+
+    @Param({"0.0", "0.1", "0.25"})
+    public double exoticRatio;
+
+    @Param({"0.0", "0.9", "1.0"})
+    public double strictness;
+
+    @Param({"PRUNE", "EXHAUSTIVE"})
+    public BuildEngine.Search search;
+
+    @Param({"10"})
+    public int limit;
+
+    //-------------------------------------------------------------------------
+    // State
+
+    private BuildEngine engine;
+    private StatWeights weights;
+    private StatMap minStats;
+
+    @Setup
+    public void setup() {
+        var pieces = Inventories.synthetic(piecesPerSlot, exoticRatio, 1L);
+
+        engine = new BuildEngine(pieces);
+        weights = new StatWeights();
+        minStats = Inventories.minStats(pieces, strictness);
+    }
+
+    //-------------------------------------------------------------------------
+    // Benchmarks
+
+    @Benchmark
+    public List<Suit> best() {
+        return engine.best(weights, minStats, limit, search);
+    }
+
+    @Benchmark
+    public List<BuildEngine.ExoticGroup> bestByExotic() {
+        return engine.bestByExotic(weights, minStats, limit, search, 1);
+    }
+}
@@ -1,7 +1,8 @@
 package armory;
 
 import armory.types.*;
-import armory.util.LineReader;
+import armory.util.Tokenizer;
+import armory.util.Tokenizer.TokenException;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,8 +15,8 @@ public class Armory {
     //-------------------------------------------------------------------------
     // Instance Variables
 
-    // A reader for the lines in the file.
-    transient private LineReader reader;
+    // The tokenizer for the file.
+    transient private Tokenizer tokenizer;
 
     // The complete suits of armor loaded from the file
     private final List<Suit> suits = new ArrayList<>();
@@ -41,37 +42,69 @@ public class Armory {
      * @throws AppError On input error
      */
     public Armory(File armorFile) throws AppError {
-        try {
-            reader = new LineReader(armorFile);
+        try (var tokenizer = new Tokenizer(armorFile)) {
+            this.tokenizer = tokenizer;
 
             parseFile();
         } catch (IOException ex) {
             throw new AppError("I/O Error reading data: " + ex.getMessage());
+        } catch (TokenException ex) {
+            throw new AppError(ex.getMessage());
         } finally {
-            reader = null;
+            tokenizer = null;
         }
     }
 
+    /**
+     * Creates an armory from its parts, as loaded from a snapshot.
+     * @param pieces The pieces of armor
+     * @param lineNumbers The line number of each piece in the source file
+     * @param suits The predefined suits
+     * @param minStats The minimum acceptable stats
+     * @param weights The stat weights
+     */
+    Armory(
+        List<Armor> pieces,
+        List<Integer> lineNumbers,
+        List<Suit> suits,
+        StatMap minStats,
+        StatWeights weights
+    ) {
+        for (int i = 0; i < pieces.size(); i++) {
+            this.pieces.add(pieces.get(i));
+            piece2line.put(pieces.get(i), lineNumbers.get(i));
+        }
+
+        this.suits.addAll(suits);
+        this.minStats = minStats;
+        this.weights = weights;
+    }
+
+    /**
+     * Loads the armory from the file, which may be a text armory file or
+     * a snapshot written by "armory compile".  A text file's snapshot is
+     * used in its place if it is up to date.
+     * @param armorFile The armor file or snapshot
+     * @return The armory
+     * @throws AppError On input error
+     */
+    public static Armory open(File armorFile) throws AppError {
+        return ArmorySnapshot.load(armorFile)
+            .orElseGet(() -> new Armory(armorFile));
+    }
+
     //-------------------------------------------------------------------------
     // The parser
 
-    private void parseFile() throws AppError {
-        while (!reader.isEmpty()) {
-            var line = reader.next().trim();
+    private void parseFile() throws IOException, TokenException {
+        while (tokenizer.nextLine()) {
+            var keyword = tokenizer.word();
 
-            if (line.isEmpty() || line.startsWith("#")) {
-                continue;
-            }
-            var scanner = new Scanner(line).useDelimiter("\\s+");
-
-            if (scanner.hasNext("suit")) {
-                addSuit(parseSuit(line));
-            } else if (scanner.hasNext("weights")) {
-                weights = parseWeights(line);
-            } else if (scanner.hasNext("minStats")) {
-                minStats = parseMinStats(line);
-            } else {
-                addPiece(parsePiece(line));
+            switch (keyword) {
+                case "suit" -> addSuit(parseSuit());
+                case "weights" -> weights = parseWeights();
+                case "minStats" -> minStats = parseMinStats();
+                default -> addPiece(parsePiece(keyword));
             }
         }
     }
@@ -80,99 +113,99 @@ public class Armory {
         suits.add(suit);
     }
 
-    // Parses the suit name from the line. The pieces are parsed from the four
-    // subsequent lines.
-    private Suit parseSuit(String line) {
-        var scanner = new Scanner(line).useDelimiter("\\s+");
-
+    // Parses the suit name from the current line. The pieces are parsed
+    // from the four subsequent lines.
+    private Suit parseSuit() throws IOException, TokenException {
         var suit = new Suit();
-        scanner.next(); // Skip "suit"
-        suit.setName(parseName(scanner));
+        suit.setName(tokenizer.quoted());
 
-        Type.forEach(type -> suit.put(type, parsePiece(type, reader.next())));
+        for (var type : Type.values()) {
+            suit.put(type, parsePiece(type));
+        }
 
         return suit;
     }
 
 
-    // Adds the piece of armor to the list, remembering its line number.
+    // Adds the piece of armor to the list, remembering its line number,
+    // unless an equal piece was added before.  The line numbers double as
+    // the set of pieces seen, so that the check is a hash lookup rather
+    // than a scan of the list.
     private void addPiece(Armor piece) {
-        if (!pieces.contains(piece)) {
+        if (piece2line.putIfAbsent(piece, tokenizer.lineNumber()) == null) {
             pieces.add(piece);
-            piece2line.put(piece, reader.lineNumber());
         }
     }
 
-    private Armor parsePiece(Type type, String line) {
-        var piece = parsePiece(line);
+    // Parses a piece of the given type from the next line.
+    private Armor parsePiece(Type type) throws IOException, TokenException {
+        if (!tokenizer.nextLine()) {
+            throw new AppError("Expected " + type + " at end of file");
+        }
+
+        var piece = parsePiece(tokenizer.word());
 
         if (piece.type() != type) {
             throw new AppError("Expected " + type + " at line " +
-                reader.lineNumber());
+                tokenizer.lineNumber());
         }
 
         return piece;
     }
 
-    // Parses the piece of armor from the given line
-    private Armor parsePiece(String line) throws AppError {
-        Scanner scanner = new Scanner(line).useDelimiter("\\s+");
-
-        try {
-            var type = Type.valueOf(scanner.next());
-            var rarity = Rarity.valueOf(scanner.next());
-            var name = parseName(scanner).trim();
-            var armor = new Armor(type, rarity, name);
-
-            // TODO: Validate that stat values are non-negative
-            Stat.stream().forEach(stat -> armor.put(stat, scanner.nextInt()));
-            return armor;
-        } catch (Exception ex) {
-            throw new AppError("Line " + reader.lineNumber() + ", " + ex.getMessage());
+    // Parses the rest of a piece of armor from the current line, given
+    // its type name.
+    private Armor parsePiece(String typeName)
+        throws IOException, TokenException
+    {
+        var type = lookup(Type.values(), typeName, "armor type");
+        var rarity = lookup(Rarity.values(), tokenizer.word(), "rarity");
+        var name = tokenizer.quoted().trim();
+        var armor = new Armor(type, rarity, name);
+
+        // TODO: Validate that stat values are non-negative
+        for (var stat : Stat.values()) {
+            armor.put(stat, tokenizer.integer());
         }
+
+        return armor;
     }
 
     // Parses stat weights
-    private StatWeights parseWeights(String line) throws AppError {
-        Scanner scanner = new Scanner(line).useDelimiter("\\s+");
-
+    private StatWeights parseWeights() throws IOException, TokenException {
         var map = new StatWeights();
 
-        try {
-            scanner.next(); // Skip "weights"
-
-            // TODO: Validate that weights are non-negative
-            Stat.stream().forEach(stat -> map.put(stat, scanner.nextDouble()));
-            return map;
-        } catch (Exception ex) {
-            throw new AppError("Line " + reader.lineNumber() + ", " + ex.getMessage());
+        // TODO: Validate that weights are non-negative
+        for (var stat : Stat.values()) {
+            map.put(stat, tokenizer.number());
         }
+
+        return map;
     }
 
     // Parses stat minimums
-    private StatMap parseMinStats(String line) throws AppError {
-        Scanner scanner = new Scanner(line).useDelimiter("\\s+");
-
+    private StatMap parseMinStats() throws IOException, TokenException {
         var map = new StatMap();
 
-        try {
-            scanner.next(); // Skip "minStats"
-
-            // TODO: Validate that stat values are non-negative
-            Stat.stream().forEach(stat -> map.put(stat, scanner.nextInt()));
-            return map;
-        } catch (Exception ex) {
-            throw new AppError("Line " + reader.lineNumber() + ", " + ex.getMessage());
+        // TODO: Validate that stat values are non-negative
+        for (var stat : Stat.values()) {
+            map.put(stat, tokenizer.integer());
         }
+
+        return map;
     }
 
-    // A name is DOUBLE_QUOTE text DOUBLE_QUOTE
-    private String parseName(Scanner scanner) {
-        scanner.skip("\\s*\"");
+    // Looks up an enum constant by its exact name.
+    private <E extends Enum<E>> E lookup(E[] values, String name, String what)
+        throws TokenException
+    {
+        for (var value : values) {
+            if (value.name().equals(name)) {
+                return value;
+            }
+        }
 
-        var name = scanner.findInLine("[^\"]+");
-        scanner.skip("\"");
-        return name;
+        throw tokenizer.error("expected " + what + ", found: \"" + name + "\"");
     }
 
     //-------------------------------------------------------------------------
@@ -180,18 +213,18 @@ public class Armory {
 
     /**
      * Gets the list of armor pieces read from the file.
-     * @return The list
+     * @return The list, which is unmodifiable
      */
     public List<Armor> getPieces() {
-        return pieces;
+        return Collections.unmodifiableList(pieces);
     }
 
     /**
      * Gets the list of predefined suits read from the file.
-     * @return The list
+     * @return The list, which is unmodifiable
      */
     public List<Suit> getSuits() {
-        return suits;
+        return Collections.unmodifiableList(suits);
     }
 
     /**
@@ -218,25 +251,9 @@ public class Armory {
     }
 
     public static List<Suit> makeSuits(List<Armor> pieces) {
-        var typeLists = getTypeLists(pieces);
         var result = new ArrayList<Suit>();
 
-        for (var head : typeLists.get(Type.HEAD)) {
-            for (var arms : typeLists.get(Type.ARMS)) {
-                for (var body : typeLists.get(Type.BODY)) {
-                    for (var legs : typeLists.get(Type.LEGS)) {
-                        var suit = new Suit(head, arms, body, legs);
-                        var numberOfExotics = suit.values().stream()
-                            .filter(Armor::isExotic)
-                            .count();
-
-                        if (numberOfExotics <= 1) {
-                            result.add(suit);
-                        }
-                    }
-                }
-            }
-        }
+        new BuildEngine(pieces).forEachSuit(result::add);
 
         return result;
     }
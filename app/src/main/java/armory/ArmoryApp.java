@@ -17,6 +17,10 @@ public class ArmoryApp {
         "list",   new ListTool(),
         "build",  new BuildTool(),
         "import", new ImportTool(),
+        "compile", new CompileTool(),
+        "generate", new GenerateTool(),
+        "shell",  new ShellTool(),
+        "serve",  new ServeTool(),
         "help",   new HelpTool()
     );
 
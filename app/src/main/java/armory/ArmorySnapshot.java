@@ -0,0 +1,466 @@
+package armory;
+
+import armory.types.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A compiled, binary snapshot of an armory file, which loads with a
+ * single memory-mapped read instead of a parse.  The snapshot of
+ * "armory.dat" is "armory.dat.snap".  It records the source file's path,
+ * modification time, size, and SHA-256 hash, and is used in place of the
+ * source only while they still match.
+ *
+ * <p>The layout, in big-endian order:</p>
+ *
+ * <pre>
+ * int     MAGIC, VERSION
+ * string  source path
+ * long    source modification time, source size
+ * byte[]  source SHA-256 hash
+ * int     number of names, then each name as a string
+ * double  weights, in stat order
+ * int     minimum stats, in stat order
+ * int     number of pieces, then each piece and its line number
+ * int     number of suits, then for each its name and four pieces
+ * </pre>
+ *
+ * <p>A string is its length in UTF-8 bytes followed by the bytes.  A
+ * piece is its type and rarity ordinals as bytes, the index of its name,
+ * and its stats in stat order.</p>
+ */
+public final class ArmorySnapshot {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    /** The suffix added to the armory file's name. */
+    public static final String SUFFIX = ".snap";
+
+    private static final int MAGIC = 0x41524D59; // "ARMY"
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+
+    // The encoded size of a piece: type, rarity, name index, and stats
+    private static final int PIECE_BYTES =
+        2 * Byte.BYTES + Integer.BYTES + Stat.COUNT * Integer.BYTES;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    private ArmorySnapshot() {
+        // Not instantiable
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Gets the snapshot file for the armory file.
+     * @param armoryFile The armory file
+     * @return The snapshot file
+     */
+    public static File snapshotFile(File armoryFile) {
+        return new File(armoryFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * Parses the armory file and writes its snapshot.
+     * @param armoryFile The armory file
+     * @return The armory
+     * @throws AppError On input error, or if the snapshot could not be
+     * written.
+     */
+    public static Armory compile(File armoryFile) throws AppError {
+        var armory = new Armory(armoryFile);
+        var target = snapshotFile(armoryFile);
+        File temp = null;
+
+        // Write to a temporary file and move it into place, so that an
+        // interrupted compile never leaves a partial snapshot.
+        try {
+            temp = File.createTempFile("snapshot", ".tmp",
+                target.getAbsoluteFile().getParentFile());
+            Files.write(temp.toPath(), encode(armory, armoryFile));
+            Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            if (temp != null) {
+                temp.delete();
+            }
+            throw new AppError("I/O Error writing snapshot: " + ex.getMessage());
+        }
+
+        return armory;
+    }
+
+    /**
+     * Loads the armory from a snapshot, if possible.  If the file is
+     * itself a snapshot, it is loaded as is.  Otherwise, the file's
+     * snapshot is loaded if it exists and still matches the file; a
+     * snapshot that cannot be read is ignored, so that the file is parsed
+     * instead.
+     * @param file An armory file or a snapshot
+     * @return The armory, or empty if there is no usable snapshot.
+     * @throws AppError if the file is a snapshot that could not be read.
+     */
+    public static Optional<Armory> load(File file) throws AppError {
+        boolean snapshot;
+
+        try {
+            snapshot = isSnapshot(file);
+        } catch (IOException ex) {
+            throw new AppError("I/O Error reading " + file + ": " +
+                ex.getMessage());
+        }
+
+        if (snapshot) {
+            try {
+                return Optional.of(decode(map(file)));
+            } catch (IOException ex) {
+                throw new AppError("I/O Error reading snapshot: " +
+                    ex.getMessage());
+            } catch (BufferUnderflowException |
+                     IllegalArgumentException |
+                     IndexOutOfBoundsException ex)
+            {
+                throw new AppError("Invalid armory snapshot: " + file);
+            }
+        }
+
+        var sibling = snapshotFile(file);
+
+        if (!sibling.isFile()) {
+            return Optional.empty();
+        }
+
+        try {
+            var buffer = map(sibling);
+
+            if (!matches(buffer, file)) {
+                return Optional.empty();
+            }
+
+            return Optional.of(decode(buffer.rewind()));
+        } catch (IOException |
+                 BufferUnderflowException |
+                 IllegalArgumentException |
+                 IndexOutOfBoundsException ex)
+        {
+            // An unreadable snapshot is a miss.
+            return Optional.empty();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Encoding
+
+    private static byte[] encode(Armory armory, File source) throws IOException {
+        var out = new Output();
+
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putString(source.getCanonicalPath());
+        out.putLong(source.lastModified());
+        out.putLong(source.length());
+        out.putBytes(hash(source));
+
+        // NEXT, intern the names.
+        var names = new ArrayList<String>();
+        var nameIndex = new HashMap<String,Integer>();
+
+        armory.getPieces().forEach(p -> intern(names, nameIndex, p.name()));
+        armory.getSuits().forEach(suit -> {
+            intern(names, nameIndex, suit.getName());
+            suit.values().forEach(p -> intern(names, nameIndex, p.name()));
+        });
+
+        out.putInt(names.size());
+        names.forEach(out::putString);
+
+        // NEXT, the weights and minimums.
+        for (var stat : Stat.values()) {
+            out.putDouble(armory.getWeights().get(stat));
+        }
+
+        for (var stat : Stat.values()) {
+            out.putInt(armory.getMinStats().get(stat));
+        }
+
+        // NEXT, the pieces and suits.
+        out.putInt(armory.getPieces().size());
+
+        for (var piece : armory.getPieces()) {
+            putPiece(out, nameIndex, piece);
+            out.putInt(armory.getLineNumber(piece));
+        }
+
+        out.putInt(armory.getSuits().size());
+
+        for (var suit : armory.getSuits()) {
+            out.putInt(nameIndex.get(suit.getName()));
+
+            for (var type : Type.values()) {
+                putPiece(out, nameIndex, suit.get(type));
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void intern(
+        List<String> names,
+        Map<String,Integer> nameIndex,
+        String name
+    ) {
+        nameIndex.computeIfAbsent(name, dummy -> {
+            names.add(name);
+            return names.size() - 1;
+        });
+    }
+
+    private static void putPiece(
+        Output out,
+        Map<String,Integer> nameIndex,
+        Armor piece
+    ) {
+        out.putByte(piece.type().ordinal());
+        out.putByte(piece.rarity().ordinal());
+        out.putInt(nameIndex.get(piece.name()));
+
+        for (var stat : Stat.values()) {
+            out.putInt(piece.get(stat));
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Decoding
+
+    // Does the file begin with the snapshot magic number?
+    private static boolean isSnapshot(File file) throws IOException {
+        if (!file.isFile() || file.length() < Integer.BYTES) {
+            return false;
+        }
+
+        try (var channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ))
+        {
+            var magic = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // Maps the whole file into memory.
+    private static ByteBuffer map(File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // Does the snapshot's header match the source file?  The path,
+    // modification time, and size are checked first; failing that, the
+    // content hash decides.
+    private static boolean matches(ByteBuffer buffer, File source)
+        throws IOException
+    {
+        String path;
+        long modified;
+        long size;
+        var hash = new byte[HASH_LENGTH];
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return false;
+            }
+
+            path = getString(buffer);
+            modified = buffer.getLong();
+            size = buffer.getLong();
+            buffer.get(hash);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            // Not a snapshot we can read; ignore it.
+            return false;
+        }
+
+        if (size != source.length()) {
+            return false;
+        }
+
+        if (path.equals(source.getCanonicalPath()) &&
+            modified == source.lastModified())
+        {
+            return true;
+        }
+
+        return Arrays.equals(hash, hash(source));
+    }
+
+    private static Armory decode(ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot");
+        }
+
+        // FIRST, skip the source key.
+        getString(buffer);
+        buffer.getLong();
+        buffer.getLong();
+        buffer.position(buffer.position() + HASH_LENGTH);
+
+        // NEXT, the names.
+        var names = new String[getCount(buffer, Integer.BYTES)];
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = getString(buffer);
+        }
+
+        // NEXT, the weights and minimums.
+        var weights = new StatWeights();
+
+        for (var stat : Stat.values()) {
+            weights.put(stat, buffer.getDouble());
+        }
+
+        var minStats = new StatMap();
+
+        for (var stat : Stat.values()) {
+            minStats.put(stat, buffer.getInt());
+        }
+
+        // NEXT, the pieces and suits.
+        var count = getCount(buffer, PIECE_BYTES + Integer.BYTES);
+        var pieces = new ArrayList<Armor>(count);
+        var lineNumbers = new ArrayList<Integer>(count);
+
+        for (int i = 0; i < count; i++) {
+            pieces.add(getPiece(buffer, names));
+            lineNumbers.add(buffer.getInt());
+        }
+
+        count = getCount(buffer, Integer.BYTES + 4 * PIECE_BYTES);
+        var suits = new ArrayList<Suit>(count);
+
+        for (int i = 0; i < count; i++) {
+            var suit = new Suit();
+            suit.setName(names[buffer.getInt()]);
+
+            for (var type : Type.values()) {
+                suit.put(type, getPiece(buffer, names));
+            }
+
+            suits.add(suit);
+        }
+
+        return new Armory(pieces, lineNumbers, suits, minStats, weights);
+    }
+
+    private static Armor getPiece(ByteBuffer buffer, String[] names) {
+        var type = Type.values()[buffer.get()];
+        var rarity = Rarity.values()[buffer.get()];
+        var piece = new Armor(type, rarity, names[buffer.getInt()]);
+
+        for (var stat : Stat.values()) {
+            piece.put(stat, buffer.getInt());
+        }
+
+        return piece;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        var bytes = new byte[getCount(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Gets a length or count, checking that the buffer holds that many
+    // entries of at least the given size.
+    private static int getCount(ByteBuffer buffer, int entryBytes) {
+        var count = buffer.getInt();
+
+        if (count < 0 || count > buffer.remaining() / entryBytes) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+
+        return count;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Computes the SHA-256 hash of the file's content.
+    private static byte[] hash(File file) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                .digest(Files.readAllBytes(file.toPath()));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is unavailable", ex);
+        }
+    }
+
+    /**
+     * A growable big-endian output buffer.
+     */
+    private static class Output {
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        void putByte(int value) {
+            ensure(Byte.BYTES).put((byte)value);
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES).putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES).putLong(value);
+        }
+
+        void putDouble(double value) {
+            ensure(Double.BYTES).putDouble(value);
+        }
+
+        void putBytes(byte[] bytes) {
+            ensure(bytes.length).put(bytes);
+        }
+
+        void putString(String value) {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        private ByteBuffer ensure(int count) {
+            if (buffer.remaining() < count) {
+                var bigger = ByteBuffer.allocate(
+                    Math.max(2 * buffer.capacity(), buffer.position() + count));
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package armory;
+
+import armory.types.Stat;
+import armory.types.StatMap;
+import armory.types.StatWeights;
+
+/**
+ * Scores a block of candidate suits at once.  The candidates' stats are
+ * given as columns, one int array per stat, indexed by candidate, and each
+ * operation is a simple loop over a column so that the JIT can compile it
+ * to SIMD instructions.
+ */
+public class BatchScorer {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The weights and minimums, indexed by stat ordinal
+    private final double[] weights = new double[Stat.COUNT];
+    private final int[] minStats = new int[Stat.COUNT];
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a scorer for the given weights and minimums.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     */
+    public BatchScorer(StatWeights weights, StatMap minStats) {
+        for (var stat : Stat.values()) {
+            this.weights[stat.ordinal()] = weights.get(stat);
+            this.minStats[stat.ordinal()] = minStats.get(stat);
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Computes the weighted sum of each candidate, and whether it meets the
+     * minimum stats.  The weighted sums are accumulated in stat order and
+     * rounded, and so are identical to those computed by
+     * StatMap.weightedSum.
+     * @param columns The candidates' stats, indexed by stat ordinal and
+     *                candidate
+     * @param count The number of candidates in the block
+     * @param scores Receives the weighted sum of each candidate
+     * @param feasible Receives whether each candidate meets the minimums
+     */
+    public void score(
+        int[][] columns,
+        int count,
+        double[] scores,
+        boolean[] feasible
+    ) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = 0.0;
+            feasible[i] = true;
+        }
+
+        for (int s = 0; s < Stat.COUNT; s++) {
+            var column = columns[s];
+            var weight = weights[s];
+            var min = minStats[s];
+
+            for (int i = 0; i < count; i++) {
+                scores[i] += weight * column[i];
+            }
+
+            for (int i = 0; i < count; i++) {
+                feasible[i] &= column[i] >= min;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            scores[i] = StatWeights.round(scores[i]);
+        }
+    }
+}
@@ -0,0 +1,1606 @@
+package armory;
+
+import armory.types.*;
+import armory.util.ParetoFrontier;
+import armory.util.TopK;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Enumerates the legal suits of armor that can be made from a set of
+ * pieces, streaming them to a consumer rather than collecting them.  A
+ * suit is legal if it contains at most one exotic piece.
+ *
+ * <p>The legal suits are enumerated in partitions: one partition of
+ * suits with no exotic, and one for each type, in which that type's piece
+ * is exotic and the others are legendary.  Illegal combinations are
+ * never generated.</p>
+ */
+public class BuildEngine {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    private static final Type[] TYPES = Type.values();
+    private static final Stat[] STATS = Stat.values();
+
+    // The depth of the last type in the search
+    private static final int LAST = TYPES.length - 1;
+
+    // The partition of suits with no exotic.  Partitions 0 to LAST are
+    // the suits whose exotic is of the type with that ordinal.
+    private static final int NO_EXOTIC = TYPES.length;
+    private static final int PARTITIONS = TYPES.length + 1;
+
+    // Tolerance for comparing a score bound with an actual score, since
+    // they are summed in different orders, and scores are rounded; see
+    // StatWeights.round.
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * How the engine searches for the best suits.
+     */
+    public enum Search {
+        /** Enumerate every legal suit. */
+        EXHAUSTIVE,
+
+        /**
+         * Skip branches of the search that cannot meet the minimum stats
+         * or beat the suits found so far.
+         */
+        PRUNE,
+
+        /**
+         * Meet in the middle: combine a table of HEAD x ARMS pairs with a
+         * table of BODY x LEGS pairs, best pairs first, stopping as soon
+         * as no remaining combination can beat the suits found so far.
+         * Always single-threaded, and cannot group suits by exotic.
+         */
+        PAIRS
+    }
+
+    /**
+     * The best suits made with a particular exotic piece.
+     * @param exotic The exotic piece, or null for suits with no exotic.
+     * @param suits The suits, best first
+     */
+    public record ExoticGroup(Armor exotic, List<Suit> suits) { }
+
+    /**
+     * One of several queries answered by a shared search.
+     * @param pieces The pieces the profile may use
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return
+     */
+    public record Profile(
+        List<Armor> pieces,
+        StatWeights weights,
+        StatMap minStats,
+        int limit
+    ) { }
+
+    // The most profiles a shared search can handle, one per bit of a long.
+    private static final int MAX_PROFILES = Long.SIZE;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The pieces of armor, indexed by type ordinal and then piece.
+    private final Armor[][] slots = new Armor[TYPES.length][];
+
+    // The stats of each piece, indexed by type ordinal, piece, and stat
+    // ordinal.
+    private final int[][][] pieceStats = new int[TYPES.length][][];
+
+    // The indices of the pieces each partition may use, indexed by
+    // partition and type ordinal.
+    private final int[][][] allowed = new int[PARTITIONS][TYPES.length][];
+
+    // The stats of the pieces each partition may use, as columns for
+    // batch scoring, indexed by partition, type ordinal, stat ordinal, and
+    // position in the allowed list.
+    private final int[][][][] columns =
+        new int[PARTITIONS][TYPES.length][Stat.COUNT][];
+
+    // The maximum value of each stat over the pieces each partition may
+    // use, indexed by partition, type ordinal, and stat ordinal.
+    private final int[][][] maxStats =
+        new int[PARTITIONS][TYPES.length][Stat.COUNT];
+
+    // The exotic pieces, in type order, and the index of each exotic
+    // piece's group (1 to N) by type ordinal and piece.  Group 0 is the
+    // suits with no exotic.
+    private final List<Armor> exoticPieces = new ArrayList<>();
+    private final int[][] exoticGroup = new int[TYPES.length][];
+
+    // The HEAD x ARMS and BODY x LEGS pair tables, built on first use.
+    private PairTable frontPairs;
+    private PairTable backPairs;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an engine for the given pieces of armor.
+     * @param pieces The pieces
+     */
+    public BuildEngine(List<Armor> pieces) {
+        var typeLists = Armory.getTypeLists(pieces);
+
+        // FIRST, index the pieces by type.
+        for (var type : TYPES) {
+            var t = type.ordinal();
+            var list = typeLists.getOrDefault(type, List.of());
+
+            if (list.size() > SuitHandle.MAX_PIECES) {
+                throw new AppError("Too many pieces of type " + type +
+                    ": " + list.size() + ", the limit is " +
+                    SuitHandle.MAX_PIECES);
+            }
+
+            slots[t] = list.toArray(new Armor[0]);
+            pieceStats[t] = new int[list.size()][Stat.COUNT];
+            exoticGroup[t] = new int[list.size()];
+
+            for (int i = 0; i < list.size(); i++) {
+                var piece = list.get(i);
+
+                for (var stat : STATS) {
+                    pieceStats[t][i][stat.ordinal()] = piece.stat(stat);
+                }
+
+                if (piece.isExotic()) {
+                    exoticPieces.add(piece);
+                    exoticGroup[t][i] = exoticPieces.size();
+                }
+            }
+        }
+
+        // NEXT, work out which pieces each partition may use.
+        for (int p = 0; p < PARTITIONS; p++) {
+            for (int t = 0; t < TYPES.length; t++) {
+                var useExotics = p == t;
+                var indices = new ArrayList<Integer>();
+
+                for (int i = 0; i < slots[t].length; i++) {
+                    if (slots[t][i].isExotic() == useExotics) {
+                        indices.add(i);
+                    }
+                }
+
+                allowed[p][t] = indices.stream().mapToInt(i -> i).toArray();
+
+                for (int s = 0; s < Stat.COUNT; s++) {
+                    var column = new int[indices.size()];
+
+                    for (int k = 0; k < column.length; k++) {
+                        column[k] = pieceStats[t][indices.get(k)][s];
+                        maxStats[p][t][s] = Math.max(maxStats[p][t][s], column[k]);
+                    }
+
+                    columns[p][t][s] = column;
+                }
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Computes the number of legal suits without enumerating them.
+     * @return The number
+     */
+    public long countSuits() {
+        long count = 0;
+
+        for (int p = 0; p < PARTITIONS; p++) {
+            long partial = 1;
+
+            for (int t = 0; t < TYPES.length; t++) {
+                partial *= allowed[p][t].length;
+            }
+
+            count += partial;
+        }
+
+        return count;
+    }
+
+    /**
+     * Computes the number of legal suits of the given pieces, as for
+     * {@link #countSuits()}, from the numbers of legendary and exotic
+     * pieces of each type, without creating an engine.
+     * @param pieces The pieces
+     * @return The number
+     */
+    public static long countSuits(List<Armor> pieces) {
+        var legendary = new long[TYPES.length];
+        var exotic = new long[TYPES.length];
+
+        for (var piece : pieces) {
+            if (piece.isExotic()) {
+                exotic[piece.type().ordinal()]++;
+            } else {
+                legendary[piece.type().ordinal()]++;
+            }
+        }
+
+        long count = 0;
+
+        for (int p = 0; p < PARTITIONS; p++) {
+            long partial = 1;
+
+            for (int t = 0; t < TYPES.length; t++) {
+                partial *= p == t ? exotic[t] : legendary[t];
+            }
+
+            count += partial;
+        }
+
+        return count;
+    }
+
+    /**
+     * Passes the handle of each legal suit to the consumer, one partition
+     * at a time.
+     * @param consumer The consumer
+     */
+    public void forEachHandle(LongConsumer consumer) {
+        enumerate(consumer);
+    }
+
+    /**
+     * Passes each legal suit to the consumer, one partition at a time.
+     * @param consumer The consumer
+     */
+    public void forEachSuit(Consumer<Suit> consumer) {
+        enumerate(handle -> consumer.accept(suit(handle)));
+    }
+
+    /**
+     * Materializes the suit with the given handle.
+     * @param handle The handle
+     * @return The suit
+     */
+    public Suit suit(long handle) {
+        return new Suit(
+            slots[0][SuitHandle.index(handle, Type.HEAD)],
+            slots[1][SuitHandle.index(handle, Type.ARMS)],
+            slots[2][SuitHandle.index(handle, Type.BODY)],
+            slots[3][SuitHandle.index(handle, Type.LEGS)]);
+    }
+
+    /**
+     * Finds the best suits that meet the minimum stats, pruning the search.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return
+     * @return The suits
+     */
+    public List<Suit> best(StatWeights weights, StatMap minStats, int limit) {
+        return best(weights, minStats, limit, Search.PRUNE);
+    }
+
+    /**
+     * Finds the best suits that meet the minimum stats, highest weighted
+     * sum first.  Only the handles of the best suits seen so far are
+     * retained during enumeration, so memory use is proportional to the
+     * limit; Suit objects are created only for the results.  Suits with
+     * equal weighted sums are returned in handle order, whatever the
+     * search and number of threads.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return
+     * @param search How to search
+     * @return The suits
+     */
+    public List<Suit> best(
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        Search search
+    ) {
+        return best(weights, minStats, limit, search, 1);
+    }
+
+    /**
+     * Finds the best suits that meet the minimum stats, as for
+     * {@link #best(StatWeights, StatMap, int, Search)}, using the given
+     * number of threads.  The HEAD x ARMS pairs of each partition are split
+     * into fork-join tasks; each worker thread keeps its own top-K, and the
+     * workers' results are merged at the end.  No more threads are used
+     * than there are processors.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return
+     * @param search How to search
+     * @param threads The number of threads, 1 or more
+     * @return The suits
+     */
+    public List<Suit> best(
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        Search search,
+        int threads
+    ) {
+        return best(weights, minStats, limit, search, threads, Profiler.NONE);
+    }
+
+    /**
+     * Finds the best suits that meet the minimum stats, as for
+     * {@link #best(StatWeights, StatMap, int, Search, int)}, counting the
+     * suits searched; see {@link #count(Profiler, Counts, int)}.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return
+     * @param search How to search
+     * @param threads The number of threads, 1 or more
+     * @param profiler The profiler to count with
+     * @return The suits
+     */
+    public List<Suit> best(
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        Search search,
+        int threads,
+        Profiler profiler
+    ) {
+        var counts = new Counts();
+        List<Suit> result;
+
+        if (search == Search.PAIRS) {
+            result = new PairSearch(weights, minStats, limit, counts).run();
+        } else {
+            var groups = search(weights, minStats, limit, search, threads,
+                false, counts);
+            result = suits(groups[0]);
+        }
+
+        count(profiler, counts, result.size());
+
+        return result;
+    }
+
+    /**
+     * Finds the best suits that meet the minimum stats for each exotic
+     * piece, and for no exotic, in a single pass.  Each group is ranked
+     * as for {@link #best(StatWeights, StatMap, int, Search, int)}.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return for each group
+     * @param search How to search; PAIRS is not supported.
+     * @param threads The number of threads, 1 or more
+     * @return The groups: no exotic, then each exotic piece in type order.
+     * @throws AppError if the search is PAIRS.
+     */
+    public List<ExoticGroup> bestByExotic(
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        Search search,
+        int threads
+    ) throws AppError {
+        return bestByExotic(weights, minStats, limit, search, threads,
+            Profiler.NONE);
+    }
+
+    /**
+     * Finds the best suits for each exotic piece, and for no exotic, as
+     * for {@link #bestByExotic(StatWeights, StatMap, int, Search, int)},
+     * counting the suits searched; see
+     * {@link #count(Profiler, Counts, int)}.
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits to return for each group
+     * @param search How to search; PAIRS is not supported.
+     * @param threads The number of threads, 1 or more
+     * @param profiler The profiler to count with
+     * @return The groups: no exotic, then each exotic piece in type order.
+     * @throws AppError if the search is PAIRS.
+     */
+    public List<ExoticGroup> bestByExotic(
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        Search search,
+        int threads,
+        Profiler profiler
+    ) throws AppError {
+        if (search == Search.PAIRS) {
+            throw new AppError(
+                "The pairs search cannot group suits by exotic.");
+        }
+
+        var counts = new Counts();
+        var groups = search(weights, minStats, limit, search, threads,
+            true, counts);
+        var result = new ArrayList<ExoticGroup>();
+
+        result.add(new ExoticGroup(null, suits(groups[0])));
+
+        for (int g = 1; g < groups.length; g++) {
+            result.add(new ExoticGroup(exoticPieces.get(g - 1), suits(groups[g])));
+        }
+
+        count(profiler, counts,
+            result.stream().mapToInt(g -> g.suits().size()).sum());
+
+        return result;
+    }
+
+    /**
+     * Finds the best suits for each of several profiles in a single pass
+     * over the suits made from the union of their pieces.  Each suit is
+     * offered to the top-K of every profile that owns all four of its
+     * pieces; a branch is cut once no profile could complete it with an
+     * acceptable suit that beats its K-th best so far.  Each profile's
+     * suits are exactly those that {@link #best(StatWeights, StatMap,
+     * int)} would return for the profile's pieces, in the same order, and
+     * are made of the profile's own pieces.
+     * @param profiles The profiles
+     * @return The suits for each profile, best first
+     * @throws AppError if there are more than 64 profiles.
+     */
+    public static List<List<Suit>> bestForEach(List<Profile> profiles)
+        throws AppError
+    {
+        if (profiles.size() > MAX_PROFILES) {
+            throw new AppError("Too many profiles: " + profiles.size() +
+                ", the limit is " + MAX_PROFILES);
+        }
+
+        // FIRST, search the union of the pieces, in order of first use.
+        // A piece that a profile lists more than once appears as often in
+        // the union, so that the profile's suits are all enumerated.
+        var union = new ArrayList<Armor>();
+        var copies = new HashMap<Armor,Integer>();
+
+        for (var profile : profiles) {
+            var seen = new HashMap<Armor,Integer>();
+
+            for (var piece : profile.pieces()) {
+                var n = seen.merge(piece, 1, Integer::sum);
+
+                if (n > copies.getOrDefault(piece, 0)) {
+                    copies.put(piece, n);
+                    union.add(piece);
+                }
+            }
+        }
+
+        var engine = new BuildEngine(union);
+
+        return engine.new ProfileSearch(profiles).run();
+    }
+
+    /**
+     * Finds the Pareto frontier of the suits that meet the minimum stats:
+     * every such suit that no other strictly dominates, being at least as
+     * good in every stat and better in some.  Suits with identical stats
+     * are all on the frontier, or all off it.  Only the frontier found so
+     * far is retained during the search; see {@link ParetoSearch}.
+     * @param weights The stat weights, used only to order the results
+     * @param minStats The minimum acceptable stats
+     * @param profiler The profiler to count with
+     * @return The suits, highest weighted sum first, and in handle order
+     *         when equal.
+     */
+    public List<Suit> pareto(
+        StatWeights weights,
+        StatMap minStats,
+        Profiler profiler
+    ) {
+        var search = new ParetoSearch(minStats);
+        search.run();
+
+        var result = new ArrayList<Suit>();
+
+        for (var handle : search.frontier.keys()) {
+            result.add(suit(handle));
+        }
+
+        // The sort is stable, so equal sums stay in handle order.
+        result.sort(new SuitComparator(weights).reversed());
+
+        profiler.count("frontier evictions", search.frontier.evictions());
+        count(profiler, search.counts, result.size());
+
+        return result;
+    }
+
+    // Runs the searcher, returning the top-K for each group, and adding
+    // the searchers' counts to the given counts.
+    private TopK[] search(
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        Search search,
+        int threads,
+        boolean byExotic,
+        Counts counts
+    ) {
+        var prune = search == Search.PRUNE;
+
+        if (threads <= 1) {
+            var searcher = new Searcher(weights, minStats, limit, prune, byExotic);
+            searcher.run();
+            counts.add(searcher.counts);
+            return searcher.groups;
+        }
+
+        // FIRST, give each worker thread its own searcher.
+        var searchers = new ConcurrentLinkedQueue<Searcher>();
+        var local = ThreadLocal.withInitial(() -> {
+            var searcher =
+                new Searcher(weights, minStats, limit, prune, byExotic);
+            searchers.add(searcher);
+            return searcher;
+        });
+
+        // NEXT, search the HEAD x ARMS pairs in parallel.
+        var tasks = (int)taskOffset(PARTITIONS);
+        var parallelism =
+            Math.min(threads, Runtime.getRuntime().availableProcessors());
+        var grain = Math.max(1, tasks / (parallelism * 8));
+        var pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new PairTask(local, 0, tasks, grain));
+        } finally {
+            pool.shutdown();
+        }
+
+        // NEXT, merge the workers' results.
+        var groups = new TopK[byExotic ? 1 + exoticPieces.size() : 1];
+
+        for (int g = 0; g < groups.length; g++) {
+            groups[g] = new TopK(limit);
+
+            for (var searcher : searchers) {
+                groups[g].addAll(searcher.groups[g]);
+            }
+        }
+
+        searchers.forEach(searcher -> counts.add(searcher.counts));
+
+        return groups;
+    }
+
+    //-------------------------------------------------------------------------
+    // Counting
+
+    /**
+     * The number of complete suits a search generated, and how many of
+     * those failed the minimum stats.
+     */
+    private static class Counts {
+        long generated = 0;
+        long infeasible = 0;
+
+        void add(Counts other) {
+            generated += other.generated;
+            infeasible += other.infeasible;
+        }
+    }
+
+    /**
+     * Adds a search's counts to the profiler.  Of all the ways to choose
+     * one piece of each type, those with more than one exotic are
+     * rejected by the exotic rule without being generated.  Of the legal
+     * suits, those not generated were pruned; of those generated, some
+     * were rejected by the minimum stats, and the rest were ranked.
+     * @param profiler The profiler
+     * @param counts The search's counts
+     * @param retained The number of suits returned
+     */
+    private void count(Profiler profiler, Counts counts, int retained) {
+        long combinations = 1;
+
+        for (int t = 0; t < TYPES.length; t++) {
+            combinations *= slots[t].length;
+        }
+
+        var legal = countSuits();
+
+        profiler.count("suits possible", legal);
+        profiler.count("rejected by exotic rule", combinations - legal);
+        profiler.count("suits generated", counts.generated);
+        profiler.count("pruned", legal - counts.generated);
+        profiler.count("rejected by minStats", counts.infeasible);
+        profiler.count("retained", retained);
+    }
+
+    //-------------------------------------------------------------------------
+    // Exhaustive Enumeration
+
+    private void enumerate(LongConsumer consumer) {
+        for (int p = 0; p < PARTITIONS; p++) {
+            var heads = allowed[p][0];
+            var arms = allowed[p][1];
+            var bodies = allowed[p][2];
+            var legs = allowed[p][3];
+
+            for (var h : heads) {
+                for (var a : arms) {
+                    for (var b : bodies) {
+                        for (var l : legs) {
+                            consumer.accept(SuitHandle.of(h, a, b, l));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Search
+
+    /**
+     * A depth-first search over the types in order, one partition at a
+     * time, retaining the best acceptable suits in a top-K for each group.
+     * When pruning, it cuts a branch as soon as the partial suit plus the
+     * best possible remaining pieces cannot meet the minimum stats, or
+     * cannot beat the K-th best suit found so far in its group.  The suits
+     * that complete a partial suit are scored as a block, one per piece of
+     * the last type.
+     */
+    private class Searcher {
+        private final double[] weights = new double[Stat.COUNT];
+        private final int[] minStats = new int[Stat.COUNT];
+        private final boolean prune;
+        private final boolean byExotic;
+
+        // The top-K for each group: just group 0, unless grouping by exotic.
+        private final TopK[] groups;
+
+        // The weighted sum of each piece, by type ordinal and piece
+        private final double[][] pieceScores = new double[TYPES.length][];
+
+        // The maximum stats and weighted sum that the types from depth d
+        // onwards can add, indexed by [partition][d].
+        private final int[][][] remainingStats =
+            new int[PARTITIONS][TYPES.length + 1][Stat.COUNT];
+        private final double[][] remainingScore =
+            new double[PARTITIONS][TYPES.length + 1];
+
+        // The search state: the current partition, the partial stats and
+        // score at each depth, and the index of the piece chosen for each
+        // type.
+        private int partition;
+        private final int[][] partialStats = new int[TYPES.length + 1][Stat.COUNT];
+        private final double[] partialScore = new double[TYPES.length + 1];
+        private final int[] chosen = new int[TYPES.length];
+
+        // The suits generated, and rejected by the minimums
+        private final Counts counts = new Counts();
+
+        // The scorer and buffers for the block of complete suits
+        private final BatchScorer scorer;
+        private final int[][] block = new int[Stat.COUNT][];
+        private final double[] blockScores;
+        private final boolean[] blockFeasible;
+
+        Searcher(
+            StatWeights weights,
+            StatMap minStats,
+            int limit,
+            boolean prune,
+            boolean byExotic
+        ) {
+            this.prune = prune;
+            this.byExotic = byExotic;
+            this.groups = new TopK[byExotic ? 1 + exoticPieces.size() : 1];
+
+            for (int g = 0; g < groups.length; g++) {
+                groups[g] = new TopK(limit);
+            }
+
+            var blockSize = slots[LAST].length;
+            this.scorer = new BatchScorer(weights, minStats);
+            this.blockScores = new double[blockSize];
+            this.blockFeasible = new boolean[blockSize];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                block[s] = new int[blockSize];
+            }
+
+            for (var stat : STATS) {
+                this.weights[stat.ordinal()] = weights.get(stat);
+                this.minStats[stat.ordinal()] = minStats.get(stat);
+            }
+
+            // FIRST, score the pieces.
+            for (int t = 0; t < TYPES.length; t++) {
+                pieceScores[t] = new double[slots[t].length];
+
+                for (int i = 0; i < slots[t].length; i++) {
+                    pieceScores[t][i] = score(pieceStats[t][i]);
+                }
+            }
+
+            // NEXT, accumulate the bounds for the remaining types in each
+            // partition.
+            for (int p = 0; p < PARTITIONS; p++) {
+                for (int d = TYPES.length - 1; d >= 0; d--) {
+                    var maxScore = 0.0;
+
+                    for (var i : allowed[p][d]) {
+                        maxScore = Math.max(maxScore, pieceScores[d][i]);
+                    }
+
+                    remainingScore[p][d] = remainingScore[p][d + 1] + maxScore;
+
+                    for (int s = 0; s < Stat.COUNT; s++) {
+                        remainingStats[p][d][s] =
+                            remainingStats[p][d + 1][s] + maxStats[p][d][s];
+                    }
+                }
+            }
+        }
+
+        // Searches every suit.
+        void run() {
+            for (partition = 0; partition < PARTITIONS; partition++) {
+                search(0);
+            }
+        }
+
+        // Searches the suits for the given task: a HEAD x ARMS pair in one
+        // of the partitions.
+        void run(int task) {
+            partition = 0;
+
+            while (taskOffset(partition + 1) <= task) {
+                partition++;
+            }
+
+            var pair = task - (int)taskOffset(partition);
+            var arms = allowed[partition][1];
+
+            if (choose(0, allowed[partition][0][pair / arms.length])
+                && choose(1, arms[pair % arms.length])
+            ) {
+                search(2);
+            }
+        }
+
+        private void search(int depth) {
+            if (depth == LAST) {
+                offerBlock();
+                return;
+            }
+
+            for (var i : allowed[partition][depth]) {
+                if (choose(depth, i)) {
+                    search(depth + 1);
+                }
+            }
+        }
+
+        // Adds piece i of the type at the given depth to the partial suit.
+        // Returns false if the branch should be cut.
+        private boolean choose(int depth, int i) {
+            var previous = partialStats[depth];
+            var current = partialStats[depth + 1];
+            var stats = pieceStats[depth][i];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                current[s] = previous[s] + stats[s];
+            }
+            partialScore[depth + 1] = partialScore[depth] + pieceScores[depth][i];
+            chosen[depth] = i;
+
+            return !prune || canSucceed(depth + 1);
+        }
+
+        // Can the partial suit at the given depth still be completed to
+        // an acceptable suit that beats the K-th best so far?
+        private boolean canSucceed(int depth) {
+            var stats = partialStats[depth];
+            var remaining = remainingStats[partition][depth];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                if (stats[s] + remaining[s] < minStats[s]) {
+                    return false;
+                }
+            }
+
+            var group = group(depth);
+
+            if (group < 0) {
+                return true;
+            }
+
+            var bound = partialScore[depth] + remainingScore[partition][depth];
+
+            return bound >= groups[group].threshold() - EPSILON;
+        }
+
+        // Gets the group of every suit that completes the partial suit at
+        // the given depth, or -1 if the exotic has not been chosen yet.
+        private int group(int depth) {
+            if (!byExotic || partition == NO_EXOTIC) {
+                return 0;
+            } else if (partition < depth) {
+                return exoticGroup[partition][chosen[partition]];
+            } else {
+                return -1;
+            }
+        }
+
+        // Completes the partial suit with each allowed piece of the last
+        // type, scores the complete suits as a block, and offers the
+        // acceptable ones to their group's top-K.
+        private void offerBlock() {
+            var indices = allowed[partition][LAST];
+            var partial = partialStats[LAST];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                var column = columns[partition][LAST][s];
+                var sums = block[s];
+                var base = partial[s];
+
+                for (int k = 0; k < indices.length; k++) {
+                    sums[k] = base + column[k];
+                }
+            }
+
+            scorer.score(block, indices.length, blockScores, blockFeasible);
+            counts.generated += indices.length;
+
+            var fixedGroup = group(LAST);
+
+            for (int k = 0; k < indices.length; k++) {
+                if (!blockFeasible[k]) {
+                    counts.infeasible++;
+                    continue;
+                }
+
+                var topK = groups[fixedGroup >= 0
+                    ? fixedGroup
+                    : exoticGroup[LAST][indices[k]]];
+
+                if (blockScores[k] >= topK.threshold()) {
+                    topK.offer(
+                        SuitHandle.of(chosen[0], chosen[1], chosen[2], indices[k]),
+                        blockScores[k]);
+                }
+            }
+        }
+
+        private double score(int[] stats) {
+            return BuildEngine.score(weights, stats);
+        }
+    }
+
+    // The index of the first parallel task in the given partition; there
+    // is one task for each HEAD x ARMS pair in each partition.
+    private long taskOffset(int partition) {
+        long offset = 0;
+
+        for (int p = 0; p < partition; p++) {
+            offset += (long)allowed[p][0].length * allowed[p][1].length;
+        }
+
+        return offset;
+    }
+
+    /**
+     * A fork-join task that searches a range of HEAD x ARMS tasks, using
+     * the current worker thread's searcher.
+     */
+    private static class PairTask extends RecursiveAction {
+        private final ThreadLocal<Searcher> local;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        PairTask(ThreadLocal<Searcher> local, int from, int to, int grain) {
+            this.local = local;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                var searcher = local.get();
+
+                for (int task = from; task < to; task++) {
+                    searcher.run(task);
+                }
+            } else {
+                var mid = (from + to) >>> 1;
+                invokeAll(
+                    new PairTask(local, from, mid, grain),
+                    new PairTask(local, mid, to, grain));
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Shared Search
+
+    /**
+     * A depth-first search like {@link Searcher}'s that answers several
+     * profiles at once.  The engine's pieces are the union of the
+     * profiles' pieces.  The search keeps the set of profiles still
+     * "alive" at each depth as a bit mask: those that own every piece
+     * chosen so far, and whose minimums and K-th best score the partial
+     * suit can still meet.  A suit is keyed in each profile's top-K by
+     * the handle of its pieces in that profile's own lists, so ties break
+     * exactly as in a search of the profile alone.
+     */
+    private class ProfileSearch {
+        private final int count;
+        private final double[][] weights;
+        private final int[][] minStats;
+        private final TopK[] topKs;
+
+        // Each profile's own pieces, by profile, type ordinal, and index
+        private final Armor[][][] ownSlots;
+
+        // The index of each engine piece in each profile's own list, or -1,
+        // by profile, type ordinal, and engine piece.
+        private final int[][][] ownIndex;
+
+        // The profiles that own each engine piece, by type ordinal and
+        // piece
+        private final long[][] owners = new long[TYPES.length][];
+
+        // The weighted sum of each piece for each profile, by profile,
+        // type ordinal, and piece
+        private final double[][][] pieceScores;
+
+        // The maximum stats and weighted sum that the types from depth d
+        // onwards can add for each profile, by profile, partition, and d.
+        private final int[][][][] remainingStats;
+        private final double[][][] remainingScore;
+
+        // The search state
+        private int partition;
+        private final int[][] partialStats = new int[TYPES.length + 1][Stat.COUNT];
+        private final double[][] partialScore;
+        private final int[] chosen = new int[TYPES.length];
+        private final int[] totals = new int[Stat.COUNT];
+
+        ProfileSearch(List<Profile> profiles) {
+            count = profiles.size();
+            weights = new double[count][Stat.COUNT];
+            minStats = new int[count][Stat.COUNT];
+            topKs = new TopK[count];
+            ownSlots = new Armor[count][TYPES.length][];
+            ownIndex = new int[count][TYPES.length][];
+            pieceScores = new double[count][TYPES.length][];
+            remainingStats = new int[count][PARTITIONS][TYPES.length + 1][Stat.COUNT];
+            remainingScore = new double[count][PARTITIONS][TYPES.length + 1];
+            partialScore = new double[count][TYPES.length + 1];
+
+            for (int t = 0; t < TYPES.length; t++) {
+                owners[t] = new long[slots[t].length];
+            }
+
+            for (int q = 0; q < count; q++) {
+                var profile = profiles.get(q);
+                var typeLists = Armory.getTypeLists(profile.pieces());
+                topKs[q] = new TopK(profile.limit());
+
+                for (var stat : STATS) {
+                    weights[q][stat.ordinal()] = profile.weights().get(stat);
+                    minStats[q][stat.ordinal()] = profile.minStats().get(stat);
+                }
+
+                // FIRST, map the engine's pieces to the profile's own; the
+                // n-th copy of a piece in one maps to the n-th in the other.
+                for (var type : TYPES) {
+                    var t = type.ordinal();
+                    var own = typeLists.getOrDefault(type, List.of());
+                    var positions = new HashMap<Armor,List<Integer>>();
+
+                    for (int i = 0; i < own.size(); i++) {
+                        positions.computeIfAbsent(own.get(i),
+                            k -> new ArrayList<>()).add(i);
+                    }
+
+                    ownSlots[q][t] = own.toArray(new Armor[0]);
+                    ownIndex[q][t] = new int[slots[t].length];
+                    pieceScores[q][t] = new double[slots[t].length];
+
+                    var copy = new HashMap<Armor,Integer>();
+
+                    for (int i = 0; i < slots[t].length; i++) {
+                        var n = copy.merge(slots[t][i], 1, Integer::sum) - 1;
+                        var list = positions.getOrDefault(slots[t][i], List.of());
+
+                        ownIndex[q][t][i] = n < list.size() ? list.get(n) : -1;
+                        pieceScores[q][t][i] = score(weights[q], pieceStats[t][i]);
+
+                        if (ownIndex[q][t][i] >= 0) {
+                            owners[t][i] |= 1L << q;
+                        }
+                    }
+                }
+
+                // NEXT, accumulate the bounds over the profile's pieces.
+                for (int p = 0; p < PARTITIONS; p++) {
+                    for (int d = TYPES.length - 1; d >= 0; d--) {
+                        var maxScore = 0.0;
+                        var maxStats = new int[Stat.COUNT];
+
+                        for (var i : allowed[p][d]) {
+                            if (ownIndex[q][d][i] < 0) {
+                                continue;
+                            }
+
+                            maxScore = Math.max(maxScore, pieceScores[q][d][i]);
+
+                            for (int s = 0; s < Stat.COUNT; s++) {
+                                maxStats[s] = Math.max(maxStats[s], pieceStats[d][i][s]);
+                            }
+                        }
+
+                        remainingScore[q][p][d] = remainingScore[q][p][d + 1] + maxScore;
+
+                        for (int s = 0; s < Stat.COUNT; s++) {
+                            remainingStats[q][p][d][s] =
+                                remainingStats[q][p][d + 1][s] + maxStats[s];
+                        }
+                    }
+                }
+            }
+        }
+
+        // Searches every suit, and materializes each profile's results
+        // from its own pieces.
+        List<List<Suit>> run() {
+            var all = count == MAX_PROFILES ? -1L : (1L << count) - 1;
+
+            for (partition = 0; partition < PARTITIONS; partition++) {
+                search(0, all);
+            }
+
+            var result = new ArrayList<List<Suit>>();
+
+            for (int q = 0; q < count; q++) {
+                var suits = new ArrayList<Suit>();
+                var own = ownSlots[q];
+
+                for (var handle : topKs[q].keys()) {
+                    suits.add(new Suit(
+                        own[0][SuitHandle.index(handle, Type.HEAD)],
+                        own[1][SuitHandle.index(handle, Type.ARMS)],
+                        own[2][SuitHandle.index(handle, Type.BODY)],
+                        own[3][SuitHandle.index(handle, Type.LEGS)]));
+                }
+
+                result.add(suits);
+            }
+
+            return result;
+        }
+
+        private void search(int depth, long alive) {
+            if (depth == LAST) {
+                offerBlock(alive);
+                return;
+            }
+
+            for (var i : allowed[partition][depth]) {
+                var next = choose(depth, i, alive);
+
+                if (next != 0) {
+                    search(depth + 1, next);
+                }
+            }
+        }
+
+        // Adds piece i of the type at the given depth to the partial suit,
+        // and returns the profiles that can still succeed with it.
+        private long choose(int depth, int i, long alive) {
+            var next = alive & owners[depth][i];
+
+            if (next == 0) {
+                return 0;
+            }
+
+            var previous = partialStats[depth];
+            var current = partialStats[depth + 1];
+            var stats = pieceStats[depth][i];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                current[s] = previous[s] + stats[s];
+            }
+            chosen[depth] = i;
+
+            for (var bits = next; bits != 0; bits &= bits - 1) {
+                var q = Long.numberOfTrailingZeros(bits);
+
+                partialScore[q][depth + 1] =
+                    partialScore[q][depth] + pieceScores[q][depth][i];
+
+                if (!canSucceed(q, depth + 1)) {
+                    next &= ~(1L << q);
+                }
+            }
+
+            return next;
+        }
+
+        // Can the partial suit at the given depth still be completed to
+        // an acceptable suit that beats the profile's K-th best so far?
+        private boolean canSucceed(int q, int depth) {
+            var stats = partialStats[depth];
+            var remaining = remainingStats[q][partition][depth];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                if (stats[s] + remaining[s] < minStats[q][s]) {
+                    return false;
+                }
+            }
+
+            var bound = partialScore[q][depth] + remainingScore[q][partition][depth];
+
+            return bound >= topKs[q].threshold() - EPSILON;
+        }
+
+        // Completes the partial suit with each allowed piece of the last
+        // type, and offers each acceptable suit to the top-K of each live
+        // profile that owns the piece.
+        private void offerBlock(long alive) {
+            var partial = partialStats[LAST];
+
+            for (var k : allowed[partition][LAST]) {
+                var bits = alive & owners[LAST][k];
+
+                if (bits == 0) {
+                    continue;
+                }
+
+                var stats = pieceStats[LAST][k];
+
+                for (int s = 0; s < Stat.COUNT; s++) {
+                    totals[s] = partial[s] + stats[s];
+                }
+
+                for (; bits != 0; bits &= bits - 1) {
+                    offer(Long.numberOfTrailingZeros(bits), k);
+                }
+            }
+        }
+
+        // Offers the complete suit with LEGS piece k to profile q.
+        private void offer(int q, int k) {
+            var mins = minStats[q];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                if (totals[s] < mins[s]) {
+                    return;
+                }
+            }
+
+            var score = StatWeights.round(score(weights[q], totals));
+
+            if (score >= topKs[q].threshold()) {
+                var own = ownIndex[q];
+                topKs[q].offer(SuitHandle.of(
+                    own[0][chosen[0]],
+                    own[1][chosen[1]],
+                    own[2][chosen[2]],
+                    own[3][k]), score);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Pareto Frontier
+
+    /**
+     * A depth-first search for the Pareto frontier of the acceptable
+     * suits, one partition at a time.  Each acceptable suit is offered to
+     * the frontier found so far, which is all the search retains: a suit
+     * that a member strictly dominates is dropped, and one that survives
+     * evicts the members that it dominates.  Each type's pieces are
+     * visited highest total first, so that strong suits are found early
+     * and few are later evicted, as in sort-filter-skyline.  A branch is
+     * cut when the partial suit cannot meet the minimum stats, or when a
+     * member strictly dominates the best stats that any suit completing
+     * it could have.
+     */
+    private class ParetoSearch {
+        private final int[] minStats = new int[Stat.COUNT];
+
+        // The pieces each partition may use, indexed by partition and
+        // type ordinal, highest total first.
+        private final int[][][] order = new int[PARTITIONS][TYPES.length][];
+
+        // The maximum stats that the types from depth d onwards can add,
+        // indexed by [partition][d].
+        private final int[][][] remainingStats =
+            new int[PARTITIONS][TYPES.length + 1][Stat.COUNT];
+
+        // The search state: the current partition, the partial stats at
+        // each depth, and the index of the piece chosen for each type.
+        private int partition;
+        private final int[][] partialStats = new int[TYPES.length + 1][Stat.COUNT];
+        private final int[] chosen = new int[TYPES.length];
+        private final int[] bound = new int[Stat.COUNT];
+
+        // The frontier, keyed by suit handle
+        final ParetoFrontier frontier = new ParetoFrontier(Stat.COUNT);
+
+        // The suits generated, and rejected by the minimums
+        final Counts counts = new Counts();
+
+        ParetoSearch(StatMap minStats) {
+            for (var stat : STATS) {
+                this.minStats[stat.ordinal()] = minStats.get(stat);
+            }
+
+            for (int p = 0; p < PARTITIONS; p++) {
+                for (int t = 0; t < TYPES.length; t++) {
+                    var stats = pieceStats[t];
+
+                    order[p][t] = Arrays.stream(allowed[p][t])
+                        .boxed()
+                        .sorted(Comparator.comparingInt((Integer i) ->
+                            -total(stats[i])))
+                        .mapToInt(i -> i)
+                        .toArray();
+                }
+
+                for (int d = TYPES.length - 1; d >= 0; d--) {
+                    for (int s = 0; s < Stat.COUNT; s++) {
+                        remainingStats[p][d][s] =
+                            remainingStats[p][d + 1][s] + maxStats[p][d][s];
+                    }
+                }
+            }
+        }
+
+        void run() {
+            for (partition = 0; partition < PARTITIONS; partition++) {
+                search(0);
+            }
+        }
+
+        private void search(int depth) {
+            for (var i : order[partition][depth]) {
+                var current = partialStats[depth + 1];
+                var stats = pieceStats[depth][i];
+
+                for (int s = 0; s < Stat.COUNT; s++) {
+                    current[s] = partialStats[depth][s] + stats[s];
+                }
+                chosen[depth] = i;
+
+                if (depth == LAST) {
+                    offer(current);
+                } else if (canSucceed(depth + 1)) {
+                    search(depth + 1);
+                }
+            }
+        }
+
+        // Can the partial suit at the given depth still be completed to
+        // an acceptable suit that is not dominated?
+        private boolean canSucceed(int depth) {
+            var stats = partialStats[depth];
+            var remaining = remainingStats[partition][depth];
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                bound[s] = stats[s] + remaining[s];
+
+                if (bound[s] < minStats[s]) {
+                    return false;
+                }
+            }
+
+            return !frontier.isDominated(bound);
+        }
+
+        // Offers the complete suit to the frontier if it is acceptable.
+        private void offer(int[] stats) {
+            counts.generated++;
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                if (stats[s] < minStats[s]) {
+                    counts.infeasible++;
+                    return;
+                }
+            }
+
+            frontier.offer(
+                SuitHandle.of(chosen[0], chosen[1], chosen[2], chosen[3]),
+                stats);
+        }
+    }
+
+    private static int total(int[] stats) {
+        var sum = 0;
+
+        for (var value : stats) {
+            sum += value;
+        }
+
+        return sum;
+    }
+
+    //-------------------------------------------------------------------------
+    // Meet in the Middle
+
+    /**
+     * The legal pairs of pieces of two adjacent types, with their summed
+     * stats.  The table depends only on the pieces, so it is built once
+     * and shared by every query.
+     */
+    private class PairTable {
+        // The number of pairs
+        final int size;
+
+        // The index of each pair's first and second pieces
+        final int[] first;
+        final int[] second;
+
+        // The summed stats of each pair, by pair and stat ordinal
+        final int[][] stats;
+
+        // The number of exotics in each pair
+        final int[] exotics;
+
+        // The largest value of each stat over all pairs, indexed by
+        // [exoticUsed][stat ordinal], as for BuildEngine.maxStats.
+        final int[][] maxStats = new int[2][Stat.COUNT];
+
+        PairTable(int type) {
+            var firsts = slots[type];
+            var seconds = slots[type + 1];
+            var capacity = firsts.length * seconds.length;
+            var count = 0;
+
+            first = new int[capacity];
+            second = new int[capacity];
+            stats = new int[capacity][];
+            exotics = new int[capacity];
+
+            for (int i = 0; i < firsts.length; i++) {
+                for (int j = 0; j < seconds.length; j++) {
+                    var numExotics = exotics(firsts[i], seconds[j]);
+
+                    if (numExotics > 1) {
+                        continue;
+                    }
+
+                    var sums = new int[Stat.COUNT];
+
+                    for (int s = 0; s < Stat.COUNT; s++) {
+                        sums[s] = pieceStats[type][i][s] + pieceStats[type + 1][j][s];
+                        maxStats[0][s] = Math.max(maxStats[0][s], sums[s]);
+
+                        if (numExotics == 0) {
+                            maxStats[1][s] = Math.max(maxStats[1][s], sums[s]);
+                        }
+                    }
+
+                    first[count] = i;
+                    second[count] = j;
+                    stats[count] = sums;
+                    exotics[count] = numExotics;
+                    count++;
+                }
+            }
+
+            size = count;
+        }
+    }
+
+    private synchronized PairTable frontPairs() {
+        if (frontPairs == null) {
+            frontPairs = new PairTable(Type.HEAD.ordinal());
+        }
+
+        return frontPairs;
+    }
+
+    private synchronized PairTable backPairs() {
+        if (backPairs == null) {
+            backPairs = new PairTable(Type.BODY.ordinal());
+        }
+
+        return backPairs;
+    }
+
+    /**
+     * A best-first merge of the front and back pair tables.  Each table is
+     * sorted by weighted sum, highest first, after dropping the pairs that
+     * cannot meet the minimum stats with any pair from the other table.
+     * Combinations are then visited in order of decreasing weighted sum,
+     * so the search can stop as soon as the next combination cannot beat
+     * the K-th best suit found so far.
+     */
+    private class PairSearch {
+        private final double[] weights = new double[Stat.COUNT];
+        private final int[] minStats = new int[Stat.COUNT];
+        private final TopK topK;
+        private final Counts counts;
+
+        private final PairTable front = frontPairs();
+        private final PairTable back = backPairs();
+
+        // The feasible pairs in each table, best first, and their scores
+        private final int[] frontOrder;
+        private final int[] backOrder;
+        private final double[] frontScores;
+        private final double[] backScores;
+
+        PairSearch(StatWeights weights, StatMap minStats, int limit, Counts counts) {
+            this.topK = new TopK(limit);
+            this.counts = counts;
+
+            for (var stat : STATS) {
+                this.weights[stat.ordinal()] = weights.get(stat);
+                this.minStats[stat.ordinal()] = minStats.get(stat);
+            }
+
+            frontScores = scores(front);
+            backScores = scores(back);
+            frontOrder = feasible(front, frontScores, back);
+            backOrder = feasible(back, backScores, front);
+        }
+
+        List<Suit> run() {
+            if (frontOrder.length == 0 || backOrder.length == 0) {
+                return new ArrayList<>();
+            }
+
+            // Combinations of the Ith front pair and Jth back pair; each
+            // is queued once, when its predecessor is visited.
+            var queue = new PriorityQueue<Combination>(
+                Comparator.comparingDouble(Combination::score).reversed());
+            queue.add(combination(0, 0));
+
+            var totals = new int[Stat.COUNT];
+
+            while (!queue.isEmpty()) {
+                var next = queue.poll();
+
+                if (next.score < topK.threshold() - EPSILON) {
+                    break;
+                }
+
+                var f = frontOrder[next.i];
+                var b = backOrder[next.j];
+
+                if (front.exotics[f] + back.exotics[b] <= 1) {
+                    offer(f, b, totals);
+                }
+
+                if (next.j + 1 < backOrder.length) {
+                    queue.add(combination(next.i, next.j + 1));
+                }
+
+                if (next.j == 0 && next.i + 1 < frontOrder.length) {
+                    queue.add(combination(next.i + 1, 0));
+                }
+            }
+
+            return suits(topK);
+        }
+
+        // Offers the suit made of front pair f and back pair b to the top-K
+        // if it is acceptable.
+        private void offer(int f, int b, int[] totals) {
+            counts.generated++;
+
+            for (int s = 0; s < Stat.COUNT; s++) {
+                totals[s] = front.stats[f][s] + back.stats[b][s];
+
+                if (totals[s] < minStats[s]) {
+                    counts.infeasible++;
+                    return;
+                }
+            }
+
+            var handle = SuitHandle.of(
+                front.first[f], front.second[f], back.first[b], back.second[b]);
+
+            topK.offer(handle, StatWeights.round(score(weights, totals)));
+        }
+
+        private Combination combination(int i, int j) {
+            return new Combination(
+                frontScores[frontOrder[i]] + backScores[backOrder[j]], i, j);
+        }
+
+        private double[] scores(PairTable table) {
+            var result = new double[table.size];
+
+            for (int p = 0; p < table.size; p++) {
+                result[p] = score(weights, table.stats[p]);
+            }
+
+            return result;
+        }
+
+        // Gets the pairs in the table that can meet the minimum stats when
+        // combined with the best of the other table, best first.
+        private int[] feasible(PairTable table, double[] scores, PairTable other) {
+            var result = new ArrayList<Integer>();
+
+            for (int p = 0; p < table.size; p++) {
+                var otherMax = other.maxStats[table.exotics[p]];
+                var ok = true;
+
+                for (int s = 0; s < Stat.COUNT; s++) {
+                    if (table.stats[p][s] + otherMax[s] < minStats[s]) {
+                        ok = false;
+                        break;
+                    }
+                }
+
+                if (ok) {
+                    result.add(p);
+                }
+            }
+
+            result.sort(Comparator.comparingDouble((Integer p) -> scores[p])
+                .reversed());
+
+            return result.stream().mapToInt(i -> i).toArray();
+        }
+    }
+
+    private record Combination(double score, int i, int j) { }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Computes the weighted sum in the same order as StatMap.weightedSum,
+    // but unrounded; a suit's score for ranking is StatWeights.round of
+    // this, as it is there.
+    private static double score(double[] weights, int[] stats) {
+        double sum = 0.0;
+
+        for (int s = 0; s < Stat.COUNT; s++) {
+            sum += weights[s] * stats[s];
+        }
+
+        return sum;
+    }
+
+    // Materializes the retained suits, best first.
+    private List<Suit> suits(TopK topK) {
+        var result = new ArrayList<Suit>();
+
+        for (var handle : topK.keys()) {
+            result.add(suit(handle));
+        }
+
+        return result;
+    }
+
+    private static int exotics(Armor... pieces) {
+        int count = 0;
+
+        for (var piece : pieces) {
+            if (piece.isExotic()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,559 @@
+package armory;
+
+import armory.types.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A request to build and rank suits from an armory: the "armory build"
+ * options, and the computation they drive, apart from any display.  A
+ * query owns its weights and minimums, copied from the armory, so any
+ * number of queries may run against one armory at once.
+ */
+public class BuildQuery {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The maximum number of generated suits to display
+    private int limit = 5;
+
+    // The Suit of armor to compare the generated suits with.
+    private String compareWith = null;
+
+    // Minimum acceptable stat values
+    private final StatMap minStats;
+
+    // Importance weights for each stat
+    private final StatWeights weights;
+
+    private boolean listUnused = false;
+
+    // How to search for the best suits
+    private BuildEngine.Search search = BuildEngine.Search.PRUNE;
+
+    // The number of threads to search with
+    private int threads = 1;
+
+    // Whether to remove dominated pieces before searching
+    private boolean prefilter = false;
+
+    // Whether to find the best suits for each exotic separately
+    private boolean byExotic = false;
+
+    // Whether to find the Pareto frontier rather than the best suits
+    private boolean pareto = false;
+
+    // The result cache directory, or null if results are not cached
+    private File cacheDir = null;
+
+    // Whether to print a profile of the run
+    private boolean profile = false;
+
+    // The file to write the profile to as JSON, or null
+    private File profileJson = null;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a query with the default options, and the armory's weights
+     * and minimums.
+     * @param armory The armory
+     */
+    public BuildQuery(Armory armory) {
+        this.minStats = new StatMap(armory.getMinStats());
+        this.weights = new StatWeights(armory.getWeights());
+    }
+
+    //-------------------------------------------------------------------------
+    // Results
+
+    /**
+     * The results of a query.
+     * @param current The suit to compare with, or null if none
+     * @param prefiltered The number of dominated pieces removed before
+     *                    searching, or -1 if not pre-filtering
+     * @param suitCount The number of possible suits
+     * @param groups The groups of suits found, each best first and named
+     *               "Choice #n"; a single group unless by exotic
+     * @param unused The pieces used in no suit found, or null if not
+     *               requested
+     */
+    public record Result(
+        Suit current,
+        int prefiltered,
+        long suitCount,
+        List<BuildEngine.ExoticGroup> groups,
+        List<Armor> unused
+    ) {
+        /**
+         * Gets all of the suits found, in group order.
+         * @return The suits
+         */
+        public List<Suit> suits() {
+            return groups.stream()
+                .flatMap(g -> g.suits().stream())
+                .toList();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    public StatMap getMinStats() {
+        return minStats;
+    }
+
+    public StatWeights getWeights() {
+        return weights;
+    }
+
+    public boolean isByExotic() {
+        return byExotic;
+    }
+
+    public boolean isPareto() {
+        return pareto;
+    }
+
+    public boolean isListUnused() {
+        return listUnused;
+    }
+
+    public boolean isProfile() {
+        return profile;
+    }
+
+    public File getProfileJson() {
+        return profileJson;
+    }
+
+    /**
+     * Parses the options and makes them available to the query.
+     * @param opts The command line options
+     * @throws AppError On input error
+     */
+    public void parseOptions(Deque<String> opts) throws AppError {
+        while (!opts.isEmpty()) {
+            var opt = opts.poll();
+
+            if (!opt.startsWith("-")) {
+                throw new AppError("Expected an option: " + opt);
+            }
+
+            switch (opt) {
+                case "-limit" ->
+                    limit = requirePositiveInteger(opt, opts);
+                case "-compare" ->
+                    compareWith = requireString(opt, opts);
+                case "-unused" ->
+                    listUnused = true;
+                case "-search" ->
+                    search = requireSearch(opt, opts);
+                case "-byexotic" ->
+                    byExotic = true;
+                case "-pareto" ->
+                    pareto = true;
+                case "-prefilter" ->
+                    prefilter = true;
+                case "-cache" ->
+                    cacheDir = ResultCache.DEFAULT_DIR;
+                case "-cachedir" ->
+                    cacheDir = new File(requireString(opt, opts));
+                case "-profile" ->
+                    profile = true;
+                case "-profilejson" ->
+                    profileJson = new File(requireString(opt, opts));
+                case "-threads" ->
+                    threads = requireThreads(opt, opts);
+                case "-mob" ->
+                    weights.put(Stat.MOB, requireWeight(opt, opts));
+                case "-res" ->
+                    weights.put(Stat.RES, requireWeight(opt, opts));
+                case "-rec" ->
+                    weights.put(Stat.REC, requireWeight(opt, opts));
+                case "-dis" ->
+                    weights.put(Stat.DIS, requireWeight(opt, opts));
+                case "-int" ->
+                    weights.put(Stat.INT, requireWeight(opt, opts));
+                case "-str" ->
+                    weights.put(Stat.STR, requireWeight(opt, opts));
+                case "-minmob" ->
+                    minStats.put(Stat.MOB, requirePositiveInteger(opt, opts));
+                case "-minres" ->
+                    minStats.put(Stat.RES, requirePositiveInteger(opt, opts));
+                case "-minrec" ->
+                    minStats.put(Stat.REC, requirePositiveInteger(opt, opts));
+                case "-mindis" ->
+                    minStats.put(Stat.DIS, requirePositiveInteger(opt, opts));
+                case "-minint" ->
+                    minStats.put(Stat.INT, requirePositiveInteger(opt, opts));
+                case "-minstr" ->
+                    minStats.put(Stat.STR, requirePositiveInteger(opt, opts));
+                default ->
+                    throw new AppError("Unknown option: " + opt);
+            }
+        }
+
+        if (byExotic && search == BuildEngine.Search.PAIRS) {
+            throw new AppError("The pairs search cannot group suits by exotic.");
+        }
+
+        if (byExotic && pareto) {
+            throw new AppError("-pareto cannot group suits by exotic.");
+        }
+    }
+
+    /**
+     * Runs the query against the armory.  The armory is not modified.
+     * @param armory The armory
+     * @param engines Gets the engine for a list of pieces, so that a
+     *                caller may reuse engines across queries.
+     * @return The result
+     * @throws AppError On error
+     */
+    public Result run(
+        Armory armory,
+        Function<List<Armor>,BuildEngine> engines
+    ) throws AppError {
+        return run(armory, engines, Profiler.NONE);
+    }
+
+    /**
+     * Runs the query against the armory, as for
+     * {@link #run(Armory, Function)}, timing its phases and counting the
+     * suits searched with the profiler.
+     * @param armory The armory
+     * @param engines Gets the engine for a list of pieces
+     * @param profiler The profiler
+     * @return The result
+     * @throws AppError On error
+     */
+    public Result run(
+        Armory armory,
+        Function<List<Armor>,BuildEngine> engines,
+        Profiler profiler
+    ) throws AppError {
+        // FIRST, get the suit to compare with.
+        var current = currentSuit(armory);
+
+        // NEXT, find the best of the possible choices
+        List<Armor> pieces;
+        BuildEngine engine;
+
+        var prefilterPhase = (prefilter ? profiler : Profiler.NONE).phase("prefilter");
+        try {
+            pieces = searchPieces(armory);
+        } finally {
+            prefilterPhase.end();
+        }
+
+        var typeListsPhase = profiler.phase("type lists");
+        try {
+            engine = engines.apply(pieces);
+        } finally {
+            typeListsPhase.end();
+        }
+
+        var cache = cache();
+        var key = cache != null ? key(pieces) : null;
+        List<BuildEngine.ExoticGroup> groups;
+
+        var searchPhase = profiler.phase("search");
+        try {
+            var cached = cache != null
+                ? cache.get(key, pieces)
+                : Optional.<List<BuildEngine.ExoticGroup>>empty();
+
+            if (cached.isPresent()) {
+                profiler.count("cache hits", 1);
+                groups = cached.get();
+            } else if (pareto) {
+                groups = List.of(new BuildEngine.ExoticGroup(null,
+                    engine.pareto(weights, minStats, profiler)));
+            } else if (byExotic) {
+                groups = engine.bestByExotic(
+                    weights, minStats, limit, search, threads, profiler);
+            } else {
+                groups = List.of(new BuildEngine.ExoticGroup(null,
+                    engine.best(weights, minStats, limit, search, threads,
+                        profiler)));
+            }
+
+            if (cache != null && cached.isEmpty() &&
+                !cache.put(key, pieces, groups))
+            {
+                profiler.count("cache write failures", 1);
+            }
+        } finally {
+            searchPhase.end();
+        }
+
+        var resultsPhase = profiler.phase("results");
+        try {
+            return result(armory, current, pieces, engine.countSuits(), groups);
+        } finally {
+            resultsPhase.end();
+        }
+    }
+
+    /**
+     * Runs several queries, each against its own armory, enumerating the
+     * suits made from all of their pieces just once; see
+     * {@link BuildEngine#bestForEach(List)}.  Each result is the same as
+     * that of {@link #run(Armory, Function)} for the query alone.  The
+     * queries' search modes and thread counts are ignored, and none may
+     * group by exotic.  Cached results are used where present, and only
+     * the remaining queries are searched.  None may ask for the Pareto
+     * frontier.
+     * @param queries The queries
+     * @param armories The armory for each query
+     * @param profiler The profiler to time the phases with
+     * @return The result of each query
+     * @throws AppError On error
+     */
+    public static List<Result> runAll(
+        List<BuildQuery> queries,
+        List<Armory> armories,
+        Profiler profiler
+    ) throws AppError {
+        var n = queries.size();
+        var currents = new ArrayList<Suit>();
+        var pieceLists = new ArrayList<List<Armor>>();
+        var groupLists = new ArrayList<List<BuildEngine.ExoticGroup>>();
+        var profiles = new ArrayList<BuildEngine.Profile>();
+        var searched = new ArrayList<Integer>();
+
+        // FIRST, get each query's comparison suit, pieces, and cached
+        // results, and a search profile for each query not cached.
+        for (int i = 0; i < n; i++) {
+            var query = queries.get(i);
+            var armory = armories.get(i);
+
+            if (query.byExotic) {
+                throw new AppError(
+                    "-byexotic is not available with several armory files.");
+            }
+
+            if (query.pareto) {
+                throw new AppError(
+                    "-pareto is not available with several armory files.");
+            }
+
+            currents.add(query.currentSuit(armory));
+
+            var pieces = query.searchPieces(armory);
+            var cache = query.cache();
+            var cached = cache != null
+                ? cache.get(query.key(pieces), pieces)
+                : Optional.<List<BuildEngine.ExoticGroup>>empty();
+
+            pieceLists.add(pieces);
+            groupLists.add(cached.orElse(null));
+            profiler.count("cache hits", cached.isPresent() ? 1 : 0);
+
+            if (cached.isEmpty()) {
+                searched.add(i);
+                profiles.add(new BuildEngine.Profile(
+                    pieces, query.weights, query.minStats, query.limit));
+            }
+        }
+
+        // NEXT, search for the rest together, and cache what was found.
+        List<List<Suit>> found;
+
+        var searchPhase = profiler.phase("search");
+        try {
+            found = BuildEngine.bestForEach(profiles);
+        } finally {
+            searchPhase.end();
+        }
+
+        for (int j = 0; j < searched.size(); j++) {
+            var i = searched.get(j);
+            var query = queries.get(i);
+            var pieces = pieceLists.get(i);
+            var groups = List.of(new BuildEngine.ExoticGroup(null, found.get(j)));
+            var cache = query.cache();
+
+            groupLists.set(i, groups);
+
+            if (cache != null && !cache.put(query.key(pieces), pieces, groups)) {
+                profiler.count("cache write failures", 1);
+            }
+        }
+
+        // NEXT, assemble the results.
+        var results = new ArrayList<Result>();
+
+        var resultsPhase = profiler.phase("results");
+        try {
+            for (int i = 0; i < n; i++) {
+                var pieces = pieceLists.get(i);
+
+                results.add(queries.get(i).result(armories.get(i),
+                    currents.get(i), pieces,
+                    BuildEngine.countSuits(pieces), groupLists.get(i)));
+            }
+        } finally {
+            resultsPhase.end();
+        }
+
+        return results;
+    }
+
+    //-------------------------------------------------------------------------
+    // Query Steps
+
+    // Gets the suit to compare with, or null if there is none.
+    private Suit currentSuit(Armory armory) throws AppError {
+        if (compareWith != null) {
+            return armory.getSuits().stream()
+                .filter(suit -> suit.getName().equals(compareWith))
+                .findFirst()
+                .orElseThrow(() ->
+                    new AppError("Unknown suit: " + compareWith));
+        } else {
+            return armory.getSuits().stream().findFirst().orElse(null);
+        }
+    }
+
+    // Gets the pieces to search: the armory's pieces, less the dominated
+    // ones if pre-filtering.
+    private List<Armor> searchPieces(Armory armory) {
+        var pieces = armory.getPieces();
+
+        return prefilter ? Skyline.dominantPieces(pieces) : pieces;
+    }
+
+    // Gets the result cache, or null if results are not cached.  The
+    // Pareto frontier is not cached.
+    private ResultCache cache() {
+        return cacheDir != null && !pareto
+            ? new ResultCache(cacheDir, ResultCache.DEFAULT_MAX_BYTES)
+            : null;
+    }
+
+    // Gets the query's cache key for the given pieces.
+    private String key(List<Armor> pieces) {
+        return ResultCache.key(pieces, weights, minStats, limit, byExotic);
+    }
+
+    // Names the suits found, collects the unused pieces if requested, and
+    // assembles the result.
+    private Result result(
+        Armory armory,
+        Suit current,
+        List<Armor> pieces,
+        long suitCount,
+        List<BuildEngine.ExoticGroup> groups
+    ) {
+        // FIRST, name the suits.
+        for (var group : groups) {
+            var suits = group.suits();
+
+            for (int i = 0; i < suits.size(); i++) {
+                suits.get(i).setName("Choice #" + (i + 1));
+            }
+        }
+
+        // NEXT, find the pieces of armor that are not used in any
+        // acceptable suit of armor.
+        List<Armor> unused = null;
+
+        if (listUnused) {
+            final var used = new HashSet<Armor>();
+
+            groups.forEach(g -> g.suits().forEach(suit ->
+                used.addAll(suit.values())));
+
+            unused = armory.getPieces().stream()
+                .filter(a -> !used.contains(a))
+                .toList();
+        }
+
+        var prefiltered = prefilter
+            ? armory.getPieces().size() - pieces.size()
+            : -1;
+
+        return new Result(current, prefiltered, suitCount, groups, unused);
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private String requireString(String opt, Deque<String> opts)
+        throws AppError
+    {
+        if (opts.isEmpty()) {
+            throw new AppError("Missing value for " + opt);
+        }
+
+        return opts.poll();
+    }
+
+    private int requirePositiveInteger(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            var value = Integer.parseInt(valueString);
+
+            if (value < 0) {
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+            }
+
+            return value;
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    // Gets the number of threads, from 1 up to the number of processors;
+    // more threads would only contend with each other.
+    private int requireThreads(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var value = requirePositiveInteger(opt, opts);
+
+        return Math.max(1,
+            Math.min(value, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private BuildEngine.Search requireSearch(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            return BuildEngine.Search.valueOf(valueString.toUpperCase());
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    private double requireWeight(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            var value = Double.parseDouble(valueString);
+
+            if (value < 0) {
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+            }
+
+            return value;
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+}
@@ -6,35 +6,16 @@ package armory;
 import armory.types.*;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * A tool for building suits of armor
  */
 public class BuildTool implements Tool {
-    //-------------------------------------------------------------------------
-    // Instance Variables
-
-    //
-    // Option Values
-    //
-
-    // The maximum number of generated suits to display
-    private int limit = 5;
-
-    // The Suit of armor to compare the generated suits with.
-    private String compareWith = null;
-
-    // Minimum acceptable stat values
-    private StatMap minStats;
-
-    // Importance weights for each stat
-    private StatWeights weights;
-
-    private boolean listUnused = false;
-
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -46,7 +27,7 @@ public class BuildTool implements Tool {
     // The App
 
     @Override public String usage() {
-        return "armory build <armory.dat> [options...]";
+        return "armory build <armory.dat> [<armory.dat>...] [options...]";
     }
 
     @Override public String oneLiner() {
@@ -66,6 +47,39 @@ read from the armory file; if not in the armory file, they default to
     -limit num     -- Maximum number of results to display, default is 5
     -unused        -- List the pieces of armor that aren't used in any
                       acceptable suit of armor
+    -search mode   -- How to search for suits: "prune" (the default)
+                      skips suits that cannot meet the minimums or beat
+                      the best suits found so far; "exhaustive" examines
+                      every suit; "pairs" combines the best HEAD/ARMS
+                      pairs with the best BODY/LEGS pairs.
+    -threads num   -- Number of threads to search with, default is 1,
+                      and at most the number of processors.
+    -byexotic      -- Find the best suits for each exotic piece, and
+                      for no exotic, rather than overall.  Not available
+                      with "-search pairs".
+    -pareto        -- Find every suit that meets the minimums and is
+                      not dominated by another such suit, being no
+                      better in any stat, rather than the best suits by
+                      weighted sum.  The suits are shown in order of
+                      weighted sum, and -limit, -search, and -threads
+                      are ignored.  Not available with -byexotic, and
+                      the results are not cached.
+    -prefilter     -- Before searching, remove each piece of armor that is
+                      dominated by another piece of the same type and
+                      rarity.  Such pieces can only produce suits that
+                      are no better than others.
+    -cache         -- Cache the results on disk, in ~/.armory/cache, and
+                      reuse them when the same query is made of the same
+                      pieces of armor.
+    -cachedir dir  -- Cache the results in the given directory.
+    -profile       -- After the results, report the time taken by each
+                      phase of the run, counts of the suits searched,
+                      and the peak heap use as sampled at each phase
+                      boundary.  The minimums and ranking are applied
+                      as suits are generated, and so are timed as part
+                      of the search.
+    -profilejson file
+                   -- Write the same report to the file as JSON.
     -mob weight    -- The weight to put on the given stat.
     -res weight
     -rec weight
@@ -78,6 +92,13 @@ read from the armory file; if not in the armory file, they default to
     -mindis value
     -minint value
     -minstr value
+
+Given several armory files, the tool answers the same options for each
+file, using that file's pieces, suits, weights, and minimums, and shows
+the results for each file in turn.  The suits made from all of the
+files' pieces are examined just once, which is much faster than
+building from each file separately.  -search and -threads are ignored,
+and -byexotic and -pareto are not available.
 """;
     }
 
@@ -88,191 +109,219 @@ read from the armory file; if not in the armory file, they default to
             System.exit(1);
         }
 
-        // NEXT, get the armory from the file.
-        var fileName = args.poll();
-        var armory = new Armory(new File(fileName));
-        minStats = armory.getMinStats();
-        weights = armory.getWeights();
-
-        // NEXT, parse the options.
-        parseOptions(args);
+        var fileNames = new ArrayList<String>();
 
-        println("\nSuits from " + fileName + ":\n");
-        armory.getSuits().forEach(s -> {
-            s.dump();
-            println("");
-        });
-
-        // NEXT, get the suit to compare with.
-        Suit current;
-
-        if (compareWith != null) {
-            // TODO Can check compareWith when parsing options
-            current = armory.getSuits().stream()
-                .filter(suit -> suit.getName().equals(compareWith))
-                .findFirst()
-                .orElseThrow(() ->
-                    new AppError("Unknown suit: " + compareWith));
-        } else {
-            current = armory.getSuits().stream().findFirst().orElse(null);
+        while (!args.isEmpty() && !args.peek().startsWith("-")) {
+            fileNames.add(args.poll());
         }
 
-        // NEXT, generate the possible choices
-        var suits = armory.allSuits();
-
-        var comparator = new SuitComparator(weights);
-
-        suits.sort(comparator.reversed());
+        if (fileNames.isEmpty()) {
+            println("Usage: " + usage());
+            System.exit(1);
+        }
 
-        println("Number of possible suits:  " + suits.size());
-        println("Possible suits ordered by: " + comparator);
-        println("Minimum acceptable stats: " + minStats.numbers());
-        println("Comparing against suit:    " +
-            (current != null ? current.getName() : "n/a"));
-        println("");
+        var profiler = Profiler.create("build", args);
 
-        // NEXT, get and display the results
-        var results = suits.stream()
-            .filter(set -> set.dominates(minStats))
-            .limit(limit)
-            .toList();
+        if (fileNames.size() == 1) {
+            var fileName = fileNames.get(0);
+            Armory armory;
 
-        if (results.isEmpty()) {
-            println("No acceptable suits found.");
-        } else {
-            for (int i = 0; i < results.size(); i++) {
-                results.get(i).setName("Choice #" + (i + 1));
+            var parsePhase = profiler.phase("parse");
+            try {
+                armory = Armory.open(new File(fileName));
+            } finally {
+                parsePhase.end();
             }
 
-            results.forEach(set -> {
-                if (current != null) {
-                    set.dumpComparison(current);
-                } else {
-                    set.dump();
-                }
-                println("");
-            });
+            build(fileName, armory, BuildEngine::new, args, profiler);
+        } else {
+            buildAll(fileNames, args, profiler);
         }
+    }
 
-        // NEXT, build a set of pieces of armor that are not used in any
-        // acceptable suit of armor.
-        if (listUnused) {
-            final var used = new HashSet<Armor>();
+    /**
+     * Builds and ranks suits from each of several armory files according
+     * to the same options, in one search, and displays the results for
+     * each file in turn.  See {@link BuildQuery#runAll(List, List)}.
+     * @param fileNames The names of the armory files
+     * @param args The options
+     * @param profiler The profiler
+     * @throws AppError On input error
+     */
+    private void buildAll(
+        List<String> fileNames,
+        Deque<String> args,
+        Profiler profiler
+    ) throws AppError {
+        // FIRST, load the files, and parse the options for each.
+        var armories = new ArrayList<Armory>();
+        var queries = new ArrayList<BuildQuery>();
+
+        for (var fileName : fileNames) {
+            Armory armory;
+
+            var parsePhase = profiler.phase("parse");
+            try {
+                armory = Armory.open(new File(fileName));
+            } finally {
+                parsePhase.end();
+            }
 
-            results.forEach(suit -> used.addAll(suit.values()));
+            var query = new BuildQuery(armory);
+            query.parseOptions(new ArrayDeque<>(args));
 
-            var unused = armory.getPieces().stream()
-                .filter(a -> !used.contains(a))
-                .toList();
+            armories.add(armory);
+            queries.add(query);
+        }
 
-            if (!unused.isEmpty()) {
-                println();
-                println("The following pieces of armor are not used in any acceptable");
-                println("suit of armor according to the current criteria.");
-                println();
+        // NEXT, find the best choices for all of them at once.
+        var results = BuildQuery.runAll(queries, armories, profiler);
 
-                unused.forEach(a -> println(a.data()));
+        // NEXT, display the results.
+        var printPhase = profiler.phase("print");
+        try {
+            for (int i = 0; i < fileNames.size(); i++) {
+                showSuits(fileNames.get(i), armories.get(i));
+                showResult(queries.get(i), results.get(i));
             }
+        } finally {
+            printPhase.end();
         }
+
+        // The options are the same for every file.
+        profiler.finish(System.out, queries.get(0).isProfile(),
+            queries.get(0).getProfileJson());
     }
 
     /**
-     * Parses the options and makes them available to the application.
-     * @param opts The command line options
+     * Builds and ranks suits from the armory's pieces according to the
+     * options, and displays them.  The armory is not modified, so that
+     * a caller may build from it repeatedly.  See {@link BuildQuery}.
+     * @param fileName The name of the armory file, for display
+     * @param armory The armory
+     * @param engines Gets the engine for a list of pieces, so that a
+     *                caller may reuse engines across builds.
+     * @param args The options
      * @throws AppError On input error
      */
-    void parseOptions(Deque<String> opts) throws AppError {
-        while (!opts.isEmpty()) {
-            var opt = opts.poll();
-
-            if (!opt.startsWith("-")) {
-                throw new AppError("Expected an option: " + opt);
-            }
-
-            switch (opt) {
-                case "-limit" ->
-                    limit = requirePositiveInteger(opt, opts);
-                case "-compare" ->
-                    compareWith = requireString(opt, opts);
-                case "-unused" ->
-                    listUnused = true;
-                case "-mob" ->
-                    weights.put(Stat.MOB, requireWeight(opt, opts));
-                case "-res" ->
-                    weights.put(Stat.RES, requireWeight(opt, opts));
-                case "-rec" ->
-                    weights.put(Stat.REC, requireWeight(opt, opts));
-                case "-dis" ->
-                    weights.put(Stat.DIS, requireWeight(opt, opts));
-                case "-int" ->
-                    weights.put(Stat.INT, requireWeight(opt, opts));
-                case "-str" ->
-                    weights.put(Stat.STR, requireWeight(opt, opts));
-                case "-minmob" ->
-                    minStats.put(Stat.MOB, requirePositiveInteger(opt, opts));
-                case "-minres" ->
-                    minStats.put(Stat.RES, requirePositiveInteger(opt, opts));
-                case "-minrec" ->
-                    minStats.put(Stat.REC, requirePositiveInteger(opt, opts));
-                case "-mindis" ->
-                    minStats.put(Stat.DIS, requirePositiveInteger(opt, opts));
-                case "-minint" ->
-                    minStats.put(Stat.INT, requirePositiveInteger(opt, opts));
-                case "-minstr" ->
-                    minStats.put(Stat.STR, requirePositiveInteger(opt, opts));
-                default ->
-                    throw new AppError("Unknown option: " + opt);
-            }
-        }
+    void build(
+        String fileName,
+        Armory armory,
+        Function<List<Armor>,BuildEngine> engines,
+        Deque<String> args
+    ) throws AppError {
+        build(fileName, armory, engines, args,
+            Profiler.create("build", args));
     }
 
+    // Builds as above, timing the phases with the profiler, and reports
+    // the profile if requested.
+    private void build(
+        String fileName,
+        Armory armory,
+        Function<List<Armor>,BuildEngine> engines,
+        Deque<String> args,
+        Profiler profiler
+    ) throws AppError {
+        // FIRST, parse the options.
+        var query = new BuildQuery(armory);
+        query.parseOptions(args);
+
+        var suitsPhase = profiler.phase("print");
+        try {
+            showSuits(fileName, armory);
+        } finally {
+            suitsPhase.end();
+        }
 
-    //-------------------------------------------------------------------------
-    // Helpers
+        // NEXT, find the best of the possible choices
+        var result = query.run(armory, engines, profiler);
 
-    private String requireString(String opt, Deque<String> opts)
-        throws AppError
-    {
-        if (opts.isEmpty()) {
-            throw new AppError("Missing value for " + opt);
+        var resultPhase = profiler.phase("print");
+        try {
+            showResult(query, result);
+        } finally {
+            resultPhase.end();
         }
 
-        return opts.poll();
+        profiler.finish(System.out, query.isProfile(), query.getProfileJson());
+    }
+
+    // Displays the armory's suits.
+    private void showSuits(String fileName, Armory armory) {
+        println("\nSuits from " + fileName + ":\n");
+        armory.getSuits().forEach(s -> {
+            s.dump();
+            println("");
+        });
     }
 
-    private int requirePositiveInteger(String opt, Deque<String> opts)
-        throws AppError
-    {
-        var valueString = requireString(opt, opts);
+    // Displays the query's result.
+    private void showResult(BuildQuery query, BuildQuery.Result result) {
+        var current = result.current();
 
-        try {
-            var value = Integer.parseInt(valueString);
+        if (result.prefiltered() >= 0) {
+            println("Pre-filter removed " + result.prefiltered() +
+                " dominated pieces of armor.");
+        }
 
-            if (value < 0) {
-                throw new AppError("Invalid " + opt + " value: " + valueString);
-            }
+        var comparator = new SuitComparator(query.getWeights());
+
+        println("Number of possible suits:  " + result.suitCount());
+        println("Possible suits ordered by: " + comparator);
+        println("Minimum acceptable stats: " + query.getMinStats().numbers());
+        println("Comparing against suit:    " +
+            (current != null ? current.getName() : "n/a"));
 
-            return value;
-        } catch (Exception ex) {
-            throw new AppError("Invalid " + opt + " value: " + valueString);
+        if (query.isPareto()) {
+            println("Pareto frontier size:      " + result.suits().size());
         }
-    }
 
-    private double requireWeight(String opt, Deque<String> opts)
-        throws AppError
-    {
-        var valueString = requireString(opt, opts);
+        println("");
+
+        // NEXT, display the results
+        if (result.suits().isEmpty()) {
+            println("No acceptable suits found.");
+        } else {
+            for (var group : result.groups()) {
+                if (group.suits().isEmpty()) {
+                    continue;
+                }
 
-        try {
-            var value = Double.parseDouble(valueString);
+                if (query.isByExotic()) {
+                    println("Best suits with " + (group.exotic() != null
+                        ? "exotic " + group.exotic().name()
+                        : "no exotic") + ":");
+                    println("");
+                }
 
-            if (value < 0) {
-                throw new AppError("Invalid " + opt + " value: " + valueString);
+                dumpSuits(group.suits(), current);
             }
+        }
+
+        // NEXT, list the pieces of armor that are not used in any
+        // acceptable suit of armor.
+        var unused = result.unused();
+
+        if (unused != null && !unused.isEmpty()) {
+            println();
+            println("The following pieces of armor are not used in any acceptable");
+            println("suit of armor according to the current criteria.");
+            println();
 
-            return value;
-        } catch (Exception ex) {
-            throw new AppError("Invalid " + opt + " value: " + valueString);
+            unused.forEach(a -> println(a.data()));
         }
     }
+
+    // Dumps the suits, comparing them with the current suit if any.
+    private void dumpSuits(List<Suit> suits, Suit current) {
+        suits.forEach(set -> {
+            if (current != null) {
+                set.dumpComparison(current);
+            } else {
+                set.dump();
+            }
+            println("");
+        });
+    }
 }
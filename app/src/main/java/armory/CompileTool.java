@@ -0,0 +1,55 @@
+package armory;
+
+import java.io.File;
+import java.util.Deque;
+
+/**
+ * A tool to compile an armory file into a binary snapshot.
+ */
+public class CompileTool implements Tool {
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    public CompileTool() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Application Code
+
+    @Override public String usage() {
+        return "armory compile <armory.dat>";
+    }
+
+    @Override public String oneLiner() {
+        return "Compiles an armory file for fast loading.";
+    }
+
+    @Override public String help() {
+        return """
+Parses the armory file and writes a binary snapshot of it alongside,
+as <armory.dat>.snap.  The "list" and "build" tools then load the
+snapshot instead of parsing the armory file, so long as the file is
+unchanged.  The snapshot can also be given to them directly.
+""";
+    }
+
+    /**
+     * Invokes the tool given the arguments.
+     *
+     * @param args The command line arguments for this tool
+     */
+    public void start(Deque<String> args) {
+        if (args.size() != 1) {
+            System.out.println("Usage: " + usage());
+            System.exit(1);
+        }
+
+        var file = new File(args.poll());
+        var armory = ArmorySnapshot.compile(file);
+
+        println("Compiled " + armory.getPieces().size() + " pieces and " +
+            armory.getSuits().size() + " suits to " +
+            ArmorySnapshot.snapshotFile(file));
+    }
+}
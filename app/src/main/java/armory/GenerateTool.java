@@ -0,0 +1,257 @@
+package armory;
+
+import armory.types.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A tool to generate synthetic armory files and DIM armor CSV files for
+ * scale testing.  See {@link VaultGenerator}.
+ */
+public class GenerateTool implements Tool {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The number of pieces of each type
+    private final Map<Type,Integer> counts = new EnumMap<>(Type.class);
+
+    // The fraction of each type's pieces that are exotic
+    private double exoticFraction = 0.3;
+
+    // The character class
+    private CharacterClass characterClass = CharacterClass.WARLOCK;
+
+    // The number of loadouts
+    private int loadouts = 3;
+
+    // The random seed
+    private long seed = 1;
+
+    // Whether to write a DIM CSV file rather than an armory file, or null
+    // to decide by the file name.
+    private Boolean csv = null;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    public GenerateTool() {
+        for (var type : Type.values()) {
+            counts.put(type, 50);
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Application Code
+
+    @Override public String usage() {
+        return "armory generate <file> [options...]";
+    }
+
+    @Override public String oneLiner() {
+        return "Generates a synthetic armory or DIM CSV file.";
+    }
+
+    @Override public String help() {
+        return """
+Generates a synthetic vault of armor for one character class, and
+writes it to the file as an armory file or, if the file name ends in
+".csv", as a DIM armor CSV file.  The stats are rolled like the base
+stats of real armor.  One piece of each type is equipped, and a few
+more are carried; the equipped pieces and the loadouts become suits
+in an armory file.  Given the same options, the armory file is just
+what "armory import -class" would make of the CSV file.  The options
+are as follows:
+
+    -pieces num    -- The number of pieces of each type, default is 50
+    -head num      -- The number of pieces of the given type
+    -arms num
+    -body num
+    -legs num
+    -exotic frac   -- The fraction of each type's pieces that are exotic,
+                      from 0.0 to 1.0; default is 0.3
+    -class name    -- warlock, titan, or hunter; default is warlock
+    -loadouts num  -- The number of loadouts, default is 3
+    -seed num      -- The random seed, default is 1
+    -format fmt    -- "dat" or "csv", overriding the file name
+""";
+    }
+
+    /**
+     * Invokes the tool given the arguments.
+     *
+     * @param args The command line arguments for this tool
+     */
+    public void start(Deque<String> args) {
+        if (args.isEmpty()) {
+            System.out.println("Usage: " + usage());
+            System.exit(1);
+        }
+
+        var file = new File(args.poll());
+        parseOptions(args);
+
+        if (csv == null) {
+            csv = file.getName().toLowerCase().endsWith(".csv");
+        }
+
+        var generator = new VaultGenerator(seed);
+        var vault = generator.generate(counts, exoticFraction,
+            characterClass, loadouts);
+
+        try (var out = new PrintStream(file)) {
+            if (csv) {
+                generator.writeCsv(vault, out);
+            } else {
+                generator.writeArmory(vault, out);
+            }
+
+            if (out.checkError()) {
+                throw new AppError("I/O Error writing " + file);
+            }
+        } catch (FileNotFoundException ex) {
+            throw new AppError("Could not write " + file + ": " +
+                ex.getMessage());
+        }
+
+        println("Generated " + vault.items().size() + " pieces of armor in " +
+            file + ".");
+    }
+
+    private void parseOptions(Deque<String> opts) throws AppError {
+        while (!opts.isEmpty()) {
+            var opt = opts.poll();
+
+            if (!opt.startsWith("-")) {
+                throw new AppError("Expected an option: " + opt);
+            }
+
+            switch (opt) {
+                case "-pieces" -> {
+                    var count = requirePositiveInteger(opt, opts);
+                    Type.forEach(type -> counts.put(type, count));
+                }
+                case "-head" ->
+                    counts.put(Type.HEAD, requirePositiveInteger(opt, opts));
+                case "-arms" ->
+                    counts.put(Type.ARMS, requirePositiveInteger(opt, opts));
+                case "-body" ->
+                    counts.put(Type.BODY, requirePositiveInteger(opt, opts));
+                case "-legs" ->
+                    counts.put(Type.LEGS, requirePositiveInteger(opt, opts));
+                case "-exotic" ->
+                    exoticFraction = requireFraction(opt, opts);
+                case "-class" ->
+                    characterClass = requireCharacterClass(opt, opts);
+                case "-loadouts" ->
+                    loadouts = requireNonNegativeInteger(opt, opts);
+                case "-seed" ->
+                    seed = requireLong(opt, opts);
+                case "-format" ->
+                    csv = requireFormat(opt, opts);
+                default ->
+                    throw new AppError("Unknown option: " + opt);
+            }
+        }
+    }
+
+    private String requireString(String opt, Deque<String> opts)
+        throws AppError
+    {
+        if (opts.isEmpty()) {
+            throw new AppError("Missing value for " + opt);
+        }
+
+        return opts.poll();
+    }
+
+    private int requirePositiveInteger(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var value = requireNonNegativeInteger(opt, opts);
+
+        if (value == 0) {
+            throw new AppError("Invalid " + opt + " value: " + value);
+        }
+
+        return value;
+    }
+
+    private int requireNonNegativeInteger(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            var value = Integer.parseInt(valueString);
+
+            if (value < 0) {
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+            }
+
+            return value;
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    private long requireLong(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            return Long.parseLong(valueString);
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    private double requireFraction(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            var value = Double.parseDouble(valueString);
+
+            if (!(value >= 0.0 && value <= 1.0)) {
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+            }
+
+            return value;
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    private CharacterClass requireCharacterClass(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            return CharacterClass.valueOf(valueString.toUpperCase());
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    // Returns true for "csv" and false for "dat".
+    private boolean requireFormat(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        return switch (valueString) {
+            case "csv" -> true;
+            case "dat" -> false;
+            default ->
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+        };
+    }
+}
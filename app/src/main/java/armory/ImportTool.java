@@ -2,9 +2,12 @@ package armory;
 
 import armory.types.*;
 import armory.util.CSVReader;
+import armory.util.ColumnStore;
+import armory.util.ColumnStore.Encoding;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 
 /**
@@ -12,14 +15,12 @@ import java.util.*;
  * armor CSV file.
  */
 public class ImportTool implements Tool {
-    private static final ImportComparator IMPORT_COMPARATOR = new ImportComparator();
-    private static final String NAME = "Name";
+    // The order in which imported pieces are written
+    static final Comparator<Armor> IMPORT_COMPARATOR = new ImportComparator();
 
-    private static final String TIER = "Tier";
     private static final String LEGENDARY = "Legendary";
     private static final String EXOTIC = "Exotic";
 
-    private static final String TYPE = "Type";
     private static final String HELMET = "Helmet";
     private static final String CHEST_ARMOR = "Chest Armor";
     private static final String GAUNTLETS = "Gauntlets";
@@ -28,35 +29,94 @@ public class ImportTool implements Tool {
     private static final String TITAN_MARK = "Titan Mark";
     private static final String HUNTER_CLOAK = "Hunter Cloak";
 
-    private static final String EQUIPPABLE = "Equippable";
-
-    private static final String MOBILITY_BASE = "Mobility (Base)";
-    private static final String RESILIENCE_BASE = "Resilience (Base)";
-    private static final String RECOVERY_BASE = "Recovery (Base)";
-    private static final String DISCIPLINE_BASE = "Discipline (Base)";
-    private static final String INTELLECT_BASE = "Intellect (Base)";
-    private static final String STRENGTH_BASE = "Strength (Base)";
-
-    private static final String EQUIPPED = "Equipped";
     private static final String TRUE = "true";
 
-    private static final String OWNER = "Owner";
     private static final String VAULT = "Vault";
 
-    private static final String LOADOUTS = "Loadouts";
-
     private static final Set<String> TIERS_OF_INTEREST =
         Set.of(EXOTIC, LEGENDARY);
 
     private static final Set<String> BORING_TYPES =
         Set.of(WARLOCK_BOND, TITAN_MARK, HUNTER_CLOAK);
 
+    /**
+     * The DIM columns the importer reads, and how each is encoded when
+     * the file is loaded into a column store.
+     */
+    private enum DimColumn implements CSVReader.ColumnName {
+        NAME("Name", Encoding.TEXT),
+        TIER("Tier", Encoding.DICTIONARY),
+        TYPE("Type", Encoding.DICTIONARY),
+        EQUIPPABLE("Equippable", Encoding.DICTIONARY),
+        MOBILITY_BASE("Mobility (Base)", Encoding.INTEGER),
+        RESILIENCE_BASE("Resilience (Base)", Encoding.INTEGER),
+        RECOVERY_BASE("Recovery (Base)", Encoding.INTEGER),
+        DISCIPLINE_BASE("Discipline (Base)", Encoding.INTEGER),
+        INTELLECT_BASE("Intellect (Base)", Encoding.INTEGER),
+        STRENGTH_BASE("Strength (Base)", Encoding.INTEGER),
+        EQUIPPED("Equipped", Encoding.DICTIONARY),
+        OWNER("Owner", Encoding.DICTIONARY),
+        LOADOUTS("Loadouts", Encoding.TEXT);
+
+        private final String columnName;
+        private final Encoding encoding;
+
+        DimColumn(String columnName, Encoding encoding) {
+            this.columnName = columnName;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String columnName() {
+            return columnName;
+        }
+
+        public Encoding encoding() {
+            return encoding;
+        }
+    }
+
+    /**
+     * A converted piece of armor, with its place in the player's gear.
+     * @param piece The piece
+     * @param equipped Whether it is currently equipped
+     * @param loadouts The names of the loadouts that include it
+     */
+    private record Imported(
+        Armor piece,
+        boolean equipped,
+        List<String> loadouts
+    ) { }
+
+    /**
+     * A row of DIM data, however it is stored.
+     */
+    private interface DimRow {
+        String get(DimColumn column);
+        int getInt(DimColumn column);
+        int lineNumber();
+    }
+
     //-------------------------------------------------------------------------
     // Instance Variables
 
     // Character class to filter on, or null for all.
     private CharacterClass characterClass;
 
+    // Whether to load the file into a column store before converting it.
+    private boolean columnar = false;
+
+    // The number of threads to parse the file with.
+    private int threads = 1;
+
+    // Whether to print a profile of the run, and the file to write it to
+    // as JSON, or null.
+    private boolean profile = false;
+    private File profileJson = null;
+
+    // The profiler for the run
+    private Profiler profiler = Profiler.NONE;
+
     //
     // Data when filtering on a specific character class
     //
@@ -92,6 +152,19 @@ Reads a Destiny Item Manager (DIM) armor CSV file and converts it
 into an Armory file.  The options are as follows:
 
     -class         -- warlock, titan, or hunter
+    -columnar      -- Load the file into compact, column-oriented storage
+                      and filter the rows by scanning columns, rather
+                      than converting it a row at a time.  Uses much
+                      less memory per row for large files.
+    -threads num   -- Number of threads to parse the file with, default
+                      is 1, and at most the number of processors.  Not
+                      available with -columnar.
+    -profile       -- After the armory file, report the time taken by
+                      each phase of the run, the numbers of rows read
+                      and pieces imported, and the peak heap use as
+                      sampled at each phase boundary.
+    -profilejson file
+                   -- Write the same report to the file as JSON.
 """;
     }
 
@@ -109,109 +182,322 @@ into an Armory file.  The options are as follows:
 
         var csvFile = args.poll();
 
+        // NEXT, parse the options.
+        profiler = Profiler.create("import", args);
+        parseOptions(args);
 
-        // NEXT, load the CSV.
-        CSVReader dim;
+        // NEXT, convert the rows into Armor values.
+        var pieces = convert(new File(csvFile));
 
+        var printPhase = profiler.phase("print");
         try {
-            dim = new CSVReader(new File(csvFile));
-        } catch (IOException | CSVReader.CSVException ex) {
-            throw new AppError(ex.getMessage());
+            printArmory(System.out, characterClass, pieces, equipped, loadouts);
+        } finally {
+            printPhase.end();
         }
 
-        // NEXT, parse the options.
-        parseOptions(args);
-
-        // NEXT, convert the rows into Armor values.
-        var pieces = convertPieces(dim);
-        pieces.sort(IMPORT_COMPARATOR);
+        profiler.finish(System.out, profile, profileJson);
+    }
 
+    /**
+     * Writes an armory file for the imported pieces.  The equipped pieces
+     * and the loadouts are written as suits only for a specific class.
+     * @param out The output stream
+     * @param characterClass The character class, or null for all
+     * @param pieces The pieces of armor, in import order
+     * @param equipped The equipped pieces
+     * @param loadouts The pieces of each loadout, by loadout name
+     */
+    static void printArmory(
+        PrintStream out,
+        CharacterClass characterClass,
+        List<Armor> pieces,
+        List<Armor> equipped,
+        Map<String,List<Armor>> loadouts
+    ) {
         if (characterClass != null) {
-            println("# Armory File: " + characterClass.toString().toLowerCase());
+            out.println("# Armory File: " + characterClass.toString().toLowerCase());
         } else {
-            println("# Armory File: All Classes");
+            out.println("# Armory File: All Classes");
         }
-        println("#");
-        println("# * = Equipped, - = Carried");
-        println();
+        out.println("#");
+        out.println("# * = Equipped, - = Carried");
+        out.println();
 
         // NEXT, add the special stuff if this is class-specific.
         if (characterClass != null) {
             // FIRST, add the default weights and mins
-            println("weights  0.8 1.0 1.0 0.0 0.0 0.0");
-            println("minStats  20  20  20  20  20  20");
-            println();
+            out.println("weights  0.8 1.0 1.0 0.0 0.0 0.0");
+            out.println("minStats  20  20  20  20  20  20");
+            out.println();
 
             // NEXT, add the current suit.
             if (!equipped.isEmpty()) {
-                equipped.sort(Comparator.comparing(Armor::type));
-                println("suit \"Current\"");
-                equipped.forEach(a -> println(a.asArmoryFileRow()));
-                println();
+                out.println("suit \"Current\"");
+                equipped.forEach(a -> out.println(a.asArmoryFileRow()));
+                out.println();
             }
 
             // NEXT, add each loadout
             for (var name : loadouts.keySet()) {
                 var suit = loadouts.get(name);
-                suit.sort(Comparator.comparing(Armor::type));
-                println("suit \"" + name + "\"");
-                suit.forEach(a -> println(a.asArmoryFileRow()));
-                println();
+                out.println("suit \"" + name + "\"");
+                suit.forEach(a -> out.println(a.asArmoryFileRow()));
+                out.println();
             }
         }
 
         // NEXT, add all the armor pieces in order.
-        println("# Exotic Armor");
+        out.println("# Exotic Armor");
         pieces.stream()
             .filter(Armor::isExotic)
-            .forEach(a -> println(a.asArmoryFileRow()));
-        println();
+            .forEach(a -> out.println(a.asArmoryFileRow()));
+        out.println();
 
-        println("# Legacy Armor");
+        out.println("# Legacy Armor");
         pieces.stream()
             .filter(a -> !a.isExotic())
-            .forEach(a -> println(a.asArmoryFileRow()));
+            .forEach(a -> out.println(a.asArmoryFileRow()));
+    }
+
+    /**
+     * Converts the CSV file according to the options.  Afterwards, the
+     * equipped pieces and the loadouts are available, each sorted by
+     * type.
+     * @param csvFile The DIM CSV file
+     * @return The pieces of armor, in import order
+     * @throws AppError On input error
+     */
+    List<Armor> convert(File csvFile) throws AppError {
+        if (columnar && threads > 1) {
+            throw new AppError("-threads is not available with -columnar");
+        }
+
+        List<Armor> pieces;
+
+        var parsePhase = profiler.phase("parse");
+        try {
+            pieces = columnar
+                ? convertColumns(csvFile)
+                : convertPieces(csvFile);
+        } finally {
+            parsePhase.end();
+        }
+
+        profiler.count("pieces imported", pieces.size());
+
+        var sortPhase = profiler.phase("sort");
+        try {
+            pieces.sort(IMPORT_COMPARATOR);
+
+            equipped.sort(Comparator.comparing(Armor::type));
+            loadouts.values().forEach(suit ->
+                suit.sort(Comparator.comparing(Armor::type)));
+        } finally {
+            sortPhase.end();
+        }
+
+        return pieces;
+    }
+
+    /**
+     * Gets the character class to filter on.
+     * @return The class, or null for all.
+     */
+    CharacterClass getCharacterClass() {
+        return characterClass;
+    }
+
+    /**
+     * Gets the pieces of armor that are currently equipped, after
+     * {@link #convert(File)}.
+     * @return The pieces
+     */
+    List<Armor> getEquipped() {
+        return equipped;
+    }
+
+    /**
+     * Gets the pieces of armor in each loadout, by loadout name in the
+     * order first seen, after {@link #convert(File)}.
+     * @return The loadouts
+     */
+    Map<String,List<Armor>> getLoadoutMap() {
+        return loadouts;
+    }
+
+    // Streams the rows of the CSV file, converting each row of interest
+    // into a piece of armor as it is read.  With multiple threads, the
+    // file is parsed in chunks and the results are merged in file order.
+    private List<Armor> convertPieces(File csvFile) {
+        List<Converter> converters;
+
+        try {
+            if (threads > 1) {
+                converters = CSVReader.read(csvFile, threads, Converter::new);
+            } else {
+                var converter = new Converter();
+                CSVReader.read(csvFile, converter);
+                converters = List.of(converter);
+            }
+        } catch (IOException ex) {
+            throw new AppError("I/O Error reading data: " + ex.getMessage());
+        } catch (CSVReader.CSVException ex) {
+            throw new AppError(ex.getMessage());
+        }
+
+        converters.forEach(converter ->
+            profiler.count("rows read", converter.rows));
+
+        return collect(converters.stream()
+            .flatMap(converter -> converter.imported.stream())
+            .toList());
+    }
+
+    // Loads the CSV file into a column store, selects the rows of interest
+    // by scanning the filter columns, and converts them in file order.
+    private List<Armor> convertColumns(File csvFile) {
+        ColumnStore<DimColumn> store;
+
+        try {
+            store = ColumnStore.load(csvFile, DimColumn.class,
+                DimColumn::encoding);
+        } catch (IOException ex) {
+            throw new AppError("I/O Error reading data: " + ex.getMessage());
+        } catch (CSVReader.CSVException ex) {
+            throw new AppError(ex.getMessage());
+        }
+
+        profiler.count("rows read", store.size());
+
+        var rows = store.select(DimColumn.TIER, TIERS_OF_INTEREST::contains);
+        rows.and(store.select(DimColumn.TYPE,
+            type -> !BORING_TYPES.contains(type)));
+
+        if (characterClass != null) {
+            rows.and(store.select(DimColumn.EQUIPPABLE,
+                this::isCharacterClass));
+        }
+
+        var result = new ArrayList<Imported>();
+
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+            final var row = i;
+
+            result.add(convertPiece(new DimRow() {
+                @Override public String get(DimColumn column) {
+                    return store.get(row, column);
+                }
+
+                @Override public int getInt(DimColumn column) {
+                    return store.getInt(row, column);
+                }
+
+                @Override public int lineNumber() {
+                    return store.lineNumber(row);
+                }
+            }));
+        }
+
+        return collect(result);
     }
 
-    private List<Armor> convertPieces(CSVReader dim) {
+    // Notes the equipped pieces and the loadouts, in order, and returns
+    // the pieces.
+    private List<Armor> collect(List<Imported> imported) {
         var result = new ArrayList<Armor>();
 
-        for (int i = 0; i < dim.getNumRows(); i++) {
-            convertPiece(dim, i).ifPresent(result::add);
+        for (var item : imported) {
+            if (item.equipped()) {
+                equipped.add(item.piece());
+            }
+
+            for (var loadout : item.loadouts()) {
+                var suit = loadouts.computeIfAbsent(loadout, dummy -> new ArrayList<>());
+                suit.add(item.piece());
+            }
+
+            result.add(item.piece());
         }
 
         return result;
     }
 
-    private Optional<Armor> convertPiece(CSVReader dim, int row) {
-        // FIRST, is it for the class we care about?
-        var equippable = dim.get(row, EQUIPPABLE).toUpperCase();
+    /**
+     * Converts the rows of interest in the CSV data it is given, binding
+     * the DIM columns to the header.
+     */
+    private final class Converter implements CSVReader.RowHandler {
+        // The DIM columns, bound to the CSV file's header.
+        private CSVReader.Schema<DimColumn> schema;
+
+        // The rows converted so far
+        private final List<Imported> imported = new ArrayList<>();
+
+        // The number of rows read
+        private long rows = 0;
+
+        @Override
+        public void header(List<String> columns) throws CSVReader.CSVException {
+            schema = CSVReader.Schema.bind(DimColumn.class, columns);
+        }
+
+        @Override
+        public void handle(CSVReader.Row row) {
+            rows++;
+
+            var dimRow = new DimRow() {
+                @Override public String get(DimColumn column) {
+                    return schema.get(row, column);
+                }
+
+                @Override public int getInt(DimColumn column) {
+                    return Integer.parseInt(schema.get(row, column));
+                }
 
+                @Override public int lineNumber() {
+                    return row.lineNumber();
+                }
+            };
+
+            if (isOfInterest(dimRow)) {
+                imported.add(convertPiece(dimRow));
+            }
+        }
+    }
+
+    // Is the row for a piece we care about?
+    private boolean isOfInterest(DimRow row) {
+        // FIRST, is it for the class we care about?
         if (characterClass != null &&
-            !characterClass.toString().equals(equippable))
+            !isCharacterClass(row.get(DimColumn.EQUIPPABLE)))
         {
-            return Optional.empty();
+            return false;
         }
 
         // NEXT, is it a bond, mark, or cloak?
-        var typeStr = dim.get(row, TYPE);
-
-        if (BORING_TYPES.contains(typeStr)) {
-            return Optional.empty();
+        if (BORING_TYPES.contains(row.get(DimColumn.TYPE))) {
+            return false;
         }
 
         // NEXT, is it at least legendary?
-        var tierStr = dim.get(row, TIER);
+        return TIERS_OF_INTEREST.contains(row.get(DimColumn.TIER));
+    }
 
-        if (!TIERS_OF_INTEREST.contains(tierStr)) {
-            return Optional.empty();
-        }
+    // Is the Equippable value the character class we care about?
+    private boolean isCharacterClass(String equippable) {
+        return characterClass.toString().equals(equippable.toUpperCase());
+    }
+
+    // Converts a row of interest into a piece of armor.
+    private Imported convertPiece(DimRow row) {
+        var typeStr = row.get(DimColumn.TYPE);
+        var tierStr = row.get(DimColumn.TIER);
 
-        // NEXT, get the remaining data.
         try {
-            var name = convertName(dim, row);
+            var name = convertName(row);
             var rarity = tierStr.equals(EXOTIC) ? Rarity.EXOTIC : Rarity.LEGEND;
-            var type = switch (dim.get(row,TYPE)) {
+            var type = switch (typeStr) {
                 case HELMET -> Type.HEAD;
                 case GAUNTLETS -> Type.ARMS;
                 case CHEST_ARMOR -> Type.BODY;
@@ -221,35 +507,28 @@ into an Armory file.  The options are as follows:
 
             var piece = new Armor(type, rarity, name);
 
-            piece.put(Stat.MOB, Integer.parseInt(dim.get(row, MOBILITY_BASE)));
-            piece.put(Stat.RES, Integer.parseInt(dim.get(row, RESILIENCE_BASE)));
-            piece.put(Stat.REC, Integer.parseInt(dim.get(row, RECOVERY_BASE)));
-            piece.put(Stat.DIS, Integer.parseInt(dim.get(row, DISCIPLINE_BASE)));
-            piece.put(Stat.INT, Integer.parseInt(dim.get(row, INTELLECT_BASE)));
-            piece.put(Stat.STR, Integer.parseInt(dim.get(row, STRENGTH_BASE)));
-
-            if (dim.get(row,EQUIPPED).equals("true")) {
-                equipped.add(piece);
-            }
+            piece.put(Stat.MOB, row.getInt(DimColumn.MOBILITY_BASE));
+            piece.put(Stat.RES, row.getInt(DimColumn.RESILIENCE_BASE));
+            piece.put(Stat.REC, row.getInt(DimColumn.RECOVERY_BASE));
+            piece.put(Stat.DIS, row.getInt(DimColumn.DISCIPLINE_BASE));
+            piece.put(Stat.INT, row.getInt(DimColumn.INTELLECT_BASE));
+            piece.put(Stat.STR, row.getInt(DimColumn.STRENGTH_BASE));
 
-            for (var loadout : getLoadouts(dim, row)) {
-                var suit = loadouts.computeIfAbsent(loadout, dummy -> new ArrayList<>());
-                suit.add(piece);
-            }
-
-            return Optional.of(piece);
+            return new Imported(piece,
+                row.get(DimColumn.EQUIPPED).equals(TRUE),
+                getLoadouts(row));
         } catch (Exception ex) {
-            throw new AppError("Could not import row at line " + (row + 2) +
-                ", " + ex.getMessage());
+            throw new AppError("Could not import row at line " +
+                row.lineNumber() + ", " + ex.getMessage());
         }
     }
 
-    public String convertName(CSVReader dim, int row) {
-        var name = dim.get(row, NAME);
+    private String convertName(DimRow row) {
+        var name = row.get(DimColumn.NAME);
 
-        if (dim.get(row, EQUIPPED).equals(TRUE)) {
+        if (row.get(DimColumn.EQUIPPED).equals(TRUE)) {
             return "*" + name;
-        } else if (!dim.get(row, OWNER).equals(VAULT)) {
+        } else if (!row.get(DimColumn.OWNER).equals(VAULT)) {
             // In inventory
             return "-" + name;
         } else {
@@ -258,12 +537,12 @@ into an Armory file.  The options are as follows:
     }
 
     // Gets a list of the loadout names for this row.
-    public List<String> getLoadouts(CSVReader dim, int row) {
+    private List<String> getLoadouts(DimRow row) {
         var result = new ArrayList<String>();
-        var names = dim.get(row, LOADOUTS);
+        var names = row.get(DimColumn.LOADOUTS);
 
         if (!names.trim().isEmpty()) {
-            for (var name : dim.get(row, LOADOUTS).split(",")) {
+            for (var name : names.split(",")) {
                 result.add(name.trim());
             }
         }
@@ -287,6 +566,14 @@ into an Armory file.  The options are as follows:
             switch (opt) {
                 case "-class" ->
                     characterClass = requireCharacterClass(opt, opts);
+                case "-columnar" ->
+                    columnar = true;
+                case "-threads" ->
+                    threads = requireThreads(opt, opts);
+                case "-profile" ->
+                    profile = true;
+                case "-profilejson" ->
+                    profileJson = new File(requireString(opt, opts));
                 default ->
                     throw new AppError("Unknown option: " + opt);
             }
@@ -303,6 +590,35 @@ into an Armory file.  The options are as follows:
         return opts.poll();
     }
 
+    private int requirePositiveInteger(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var valueString = requireString(opt, opts);
+
+        try {
+            var value = Integer.parseInt(valueString);
+
+            if (value < 0) {
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+            }
+
+            return value;
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+
+    // Gets the number of threads, from 1 up to the number of processors;
+    // more threads would only contend with each other.
+    private int requireThreads(String opt, Deque<String> opts)
+        throws AppError
+    {
+        var value = requirePositiveInteger(opt, opts);
+
+        return Math.max(1,
+            Math.min(value, Runtime.getRuntime().availableProcessors()));
+    }
+
     private CharacterClass requireCharacterClass(String opt, Deque<String> opts)
         throws AppError
     {
@@ -1,16 +1,31 @@
 package armory;
 
+import armory.types.AppError;
 import armory.types.Armor;
 import armory.types.Type;
 
 import java.io.File;
 import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * A tool to list the pieces of armor in the file.
  */
 public class ListTool implements Tool {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // Whether to print a profile of the run
+    private boolean profile = false;
+
+    // The file to write the profile to as JSON, or null
+    private File profileJson = null;
+
     //-------------------------------------------------------------------------
     // Constructor
 
@@ -22,7 +37,7 @@ public class ListTool implements Tool {
     // Application Code
 
     @Override public String usage() {
-        return "armory list <armory.dat>";
+        return "armory list <armory.dat> [options...]";
     }
 
     @Override public String oneLiner() {
@@ -31,7 +46,18 @@ public class ListTool implements Tool {
 
     @Override public String help() {
         return """
-Outputs a list of the armor pieces defined in the armory file.
+Outputs a list of the armor pieces defined in the armory file, then
+the pieces dominated by other pieces of the same type, and the number
+of pieces of each type in each dominance layer.  Layer 1 is the pieces
+no other piece beats; layer 2 is those that only layer 1 beats, and so
+on.  The options are as follows:
+
+    -profile       -- After the list, report the time taken by each
+                      phase of the run, the numbers of pieces and of
+                      dominated pieces, and the peak heap use as
+                      sampled at each phase boundary.
+    -profilejson file
+                   -- Write the same report to the file as JSON.
 """;
     }
 
@@ -41,41 +67,154 @@ Outputs a list of the armor pieces defined in the armory file.
      * @param args The command line arguments for this tool
      */
     public void start(Deque<String> args) {
-        if (args.size() != 1) {
+        if (args.isEmpty()) {
             System.out.println("Usage: " + usage());
             System.exit(1);
         }
 
         var fileName = args.poll();
+        var profiler = Profiler.create("list", args);
+        parseOptions(args);
+
+        Armory db;
 
-        // FIRST, load the armor from the file.
-        var db = new Armory(new File(fileName));
+        var parsePhase = profiler.phase("parse");
+        try {
+            db = Armory.open(new File(fileName));
+        } finally {
+            parsePhase.end();
+        }
 
-        System.out.println("\nPieces from " + fileName + ":\n");
-        db.getPieces().forEach(p -> System.out.println(p.data()));
+        list(fileName, db, profiler);
+        profiler.finish(System.out, profile, profileJson);
+    }
+
+    /**
+     * Lists the armory's pieces, and the dominated pieces.
+     * @param fileName The name of the armory file, for display
+     * @param db The armory
+     */
+    void list(String fileName, Armory db) {
+        list(fileName, db, Profiler.NONE);
+    }
+
+    // Lists as above, timing the phases with the profiler.
+    private void list(String fileName, Armory db, Profiler profiler) {
+        var piecesPhase = profiler.phase("print");
+        try {
+            System.out.println("\nPieces from " + fileName + ":\n");
+            db.getPieces().forEach(p -> System.out.println(p.data()));
+        } finally {
+            piecesPhase.end();
+        }
 
         // NEXT, look for dominated pieces
-        var dominated = new HashSet<Armor>();
+        Map<Type,List<List<Armor>>> layers;
+        Set<Armor> dominated;
+
+        var dominancePhase = profiler.phase("dominance");
+        try {
+            layers = layers(db.getPieces());
+            dominated = dominated(layers);
+        } finally {
+            dominancePhase.end();
+        }
+
+        profiler.count("pieces", db.getPieces().size());
+        profiler.count("dominated", dominated.size());
 
-        var typeLists = Armory.getTypeLists(db.getPieces());
+        if (!dominated.isEmpty()) {
+            var dominatedPhase = profiler.phase("print");
+            try {
+                println();
+                println("The following pieces of armor are dominated by other pieces of");
+                println("the same type.  You might wish to dispose of them.");
+                println();
+
+                dominated.forEach(a -> println(a.data()));
+            } finally {
+                dominatedPhase.end();
+            }
+        }
 
-        for (var list : typeLists.values()) {
-            for (var a1 : list) {
-                for (var a2 : list) {
-                    if (a1 != a2 && a1.dominates(a2)) {
-                        dominated.add(a2);
+        if (!layers.isEmpty()) {
+            var layersPhase = profiler.phase("print");
+            try {
+                println();
+                println("The number of pieces in each dominance layer, by type, with");
+                println("the undominated pieces first:");
+                println();
+
+                layers.forEach((type, typeLayers) ->
+                    println(String.format("%-5s %s", type.name() + ":",
+                        typeLayers.stream()
+                            .map(layer -> Integer.toString(layer.size()))
+                            .collect(Collectors.joining(", ")))));
+            } finally {
+                layersPhase.end();
+            }
+        }
+    }
+
+    private void parseOptions(Deque<String> opts) throws AppError {
+        while (!opts.isEmpty()) {
+            var opt = opts.poll();
+
+            if (!opt.startsWith("-")) {
+                throw new AppError("Expected an option: " + opt);
+            }
+
+            switch (opt) {
+                case "-profile" ->
+                    profile = true;
+                case "-profilejson" -> {
+                    if (opts.isEmpty()) {
+                        throw new AppError("Missing value for " + opt);
                     }
+                    profileJson = new File(opts.poll());
                 }
+                default ->
+                    throw new AppError("Unknown option: " + opt);
             }
         }
+    }
 
-        if (!dominated.isEmpty()) {
-            println();
-            println("The following pieces of armor are dominated by other pieces of");
-            println("the same type.  You might wish to dispose of them.");
-            println();
+    /**
+     * Finds the pieces of armor that are dominated by other pieces of the
+     * same type.  A piece with the same stats as another counts as
+     * dominated.
+     * @param pieces The pieces
+     * @return The dominated pieces
+     */
+    static Set<Armor> dominated(List<Armor> pieces) {
+        return dominated(layers(pieces));
+    }
 
-            dominated.forEach(a -> println(a.data()));
-        }
+    /**
+     * Sorts the pieces of armor of each type into dominance layers; see
+     * {@link Skyline#layers(List)}.  The types are analyzed in parallel.
+     * @param pieces The pieces
+     * @return The layers of each type present, in type order
+     */
+    static Map<Type,List<List<Armor>>> layers(List<Armor> pieces) {
+        return Armory.getTypeLists(pieces).entrySet().parallelStream()
+            .collect(Collectors.toMap(Map.Entry::getKey,
+                entry -> Skyline.layers(entry.getValue()),
+                (a, b) -> a,
+                () -> new EnumMap<>(Type.class)));
+    }
+
+    /**
+     * Gets the dominated pieces given the layers of each type.
+     * @param layers The layers, as returned by {@link #layers(List)}
+     * @return The dominated pieces
+     */
+    static Set<Armor> dominated(Map<Type,List<List<Armor>>> layers) {
+        var dominated = new HashSet<Armor>();
+
+        layers.values().forEach(typeLayers ->
+            dominated.addAll(Skyline.dominated(typeLayers)));
+
+        return dominated;
     }
 }
@@ -0,0 +1,316 @@
+package armory;
+
+import armory.types.AppError;
+import armory.util.JsonWriter;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times the phases of a tool's run, and tallies its counters and peak
+ * heap use, for the -profile options.  Each phase and counter is also
+ * emitted as a JFR event, "armory.Phase" or "armory.Counter", which is
+ * recorded when the JVM runs with a flight recording.  Phases and
+ * counters are reported in the order first seen; a phase timed more
+ * than once accumulates.
+ *
+ * <p>The peak heap use is the most heap in use, as reported by the
+ * MemoryMXBean, at any phase boundary, count, or the end of the run.
+ * Being sampled, it can miss a higher peak between samples; but unlike
+ * the sum of the heap pools' own peaks, which each pool reaches at a
+ * different time, it is a heap size that actually existed.</p>
+ */
+public class Profiler {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    /** A profiler that records nothing. */
+    public static final Profiler NONE = new Profiler(null);
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    //-------------------------------------------------------------------------
+    // JFR Events
+
+    @Name("armory.Phase")
+    @Label("Armory Phase")
+    @Category("Armory")
+    @Description("A timed phase of an armory tool's run")
+    static class PhaseEvent extends Event {
+        @Label("Tool")
+        String tool;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("armory.Counter")
+    @Label("Armory Counter")
+    @Category("Armory")
+    @Description("The final value of one of an armory tool's counters")
+    static class CounterEvent extends Event {
+        @Label("Tool")
+        String tool;
+
+        @Label("Counter")
+        String counter;
+
+        @Label("Value")
+        long value;
+    }
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The tool being profiled, or null if not profiling
+    private final String tool;
+
+    // The accumulated time of each phase, in nanoseconds
+    private final Map<String,Long> phases = new LinkedHashMap<>();
+
+    // The value of each counter
+    private final Map<String,Long> counters = new LinkedHashMap<>();
+
+    // The source of the heap samples, or null if not profiling
+    private final MemoryMXBean memory;
+
+    // The most heap in use at any sample, in bytes
+    private long peakHeap = 0;
+
+    // The phase returned when not profiling
+    private final Phase inactive = new Phase(null);
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a profiler for the tool, taking the first heap sample.
+     * @param tool The tool's name
+     */
+    private Profiler(String tool) {
+        this.tool = tool;
+        this.memory = tool != null ? ManagementFactory.getMemoryMXBean() : null;
+
+        if (tool != null) {
+            sampleHeap();
+
+            // Load the event classes now, so that the first phase is not
+            // charged for it.
+            new PhaseEvent();
+            new CounterEvent();
+        }
+    }
+
+    /**
+     * Gets a profiler for the tool if the arguments ask for a profile,
+     * or if a flight recording is running, and otherwise {@link #NONE};
+     * profiling is not free, as it loads the JFR and management classes.
+     * @param tool The tool's name
+     * @param args The tool's arguments
+     * @return The profiler
+     */
+    public static Profiler create(String tool, Collection<String> args) {
+        if (args.contains("-profile") || args.contains("-profilejson") ||
+            FlightRecorder.isInitialized())
+        {
+            return new Profiler(tool);
+        }
+
+        return NONE;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * A phase being timed, from its creation until {@link #end()}.
+     */
+    public final class Phase {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final PhaseEvent event;
+
+        // Begins the phase, or makes an inactive phase if the name is
+        // null.
+        private Phase(String name) {
+            this.name = name;
+            this.event = name != null ? new PhaseEvent() : null;
+
+            if (event != null) {
+                sampleHeap();
+                event.begin();
+            }
+        }
+
+        /**
+         * Ends the phase, adding its time to the phase's total.
+         */
+        public void end() {
+            if (event == null) {
+                return;
+            }
+
+            var elapsed = System.nanoTime() - start;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.tool = tool;
+                event.phase = name;
+                event.commit();
+            }
+
+            synchronized (Profiler.this) {
+                phases.merge(name, elapsed, Long::sum);
+                sampleHeap();
+            }
+        }
+    }
+
+    /**
+     * Begins timing a phase, which the caller ends in a finally block.
+     * @param name The phase's name
+     * @return The phase, which does nothing if not profiling
+     */
+    public Phase phase(String name) {
+        return tool != null ? new Phase(name) : inactive;
+    }
+
+    /**
+     * Adds to a counter.
+     * @param name The counter's name
+     * @param delta The amount to add
+     */
+    public synchronized void count(String name, long delta) {
+        if (tool != null) {
+            counters.merge(name, delta, Long::sum);
+            sampleHeap();
+        }
+    }
+
+    /**
+     * Gets the most heap in use at any sample since the profiler was
+     * created; see the class comment.
+     * @return The peak, in bytes
+     */
+    public synchronized long peakHeap() {
+        return peakHeap;
+    }
+
+    /**
+     * Ends profiling: emits the counters and the peak heap use as JFR
+     * events, and prints the report and writes it as JSON if requested.
+     * @param out The output stream for the report
+     * @param print Whether to print the report
+     * @param jsonFile The file to write the report to as JSON, or null
+     * @throws AppError if the JSON file cannot be written.
+     */
+    public synchronized void finish(PrintStream out, boolean print, File jsonFile)
+        throws AppError
+    {
+        if (tool == null) {
+            return;
+        }
+
+        sampleHeap();
+        var peak = peakHeap;
+
+        counters.forEach(this::emitCounter);
+        emitCounter("peak heap bytes", peak);
+
+        if (print) {
+            printReport(out, peak);
+        }
+
+        if (jsonFile != null) {
+            try {
+                Files.writeString(jsonFile.toPath(), toJson(peak) + "\n",
+                    StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                throw new AppError("Could not write " + jsonFile + ": " +
+                    ex.getMessage());
+            }
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private void printReport(PrintStream out, long peak) {
+        out.println();
+        out.println("Profile of armory " + tool + ":");
+        out.println();
+        out.printf("  %-28s %14s%n", "Phase", "Time (ms)");
+
+        var total = 0L;
+
+        for (var entry : phases.entrySet()) {
+            out.printf("  %-28s %14.3f%n", entry.getKey(),
+                entry.getValue() / NANOS_PER_MILLI);
+            total += entry.getValue();
+        }
+
+        out.printf("  %-28s %14.3f%n", "total", total / NANOS_PER_MILLI);
+        out.println();
+
+        if (!counters.isEmpty()) {
+            out.printf("  %-28s %14s%n", "Counter", "Value");
+            counters.forEach((name, value) ->
+                out.printf("  %-28s %14d%n", name, value));
+            out.println();
+        }
+
+        out.printf("  %-28s %14.1f%n", "Peak heap (MB)", peak / BYTES_PER_MB);
+    }
+
+    private String toJson(long peak) {
+        var json = new JsonWriter();
+
+        json.beginObject();
+        json.name("tool").value(tool);
+
+        json.name("phasesMillis").beginObject();
+        phases.forEach((name, nanos) ->
+            json.name(name).value(nanos / NANOS_PER_MILLI));
+        json.endObject();
+
+        json.name("counters").beginObject();
+        counters.forEach((name, value) -> json.name(name).value(value));
+        json.endObject();
+
+        json.name("peakHeapBytes").value(peak);
+        json.endObject();
+
+        return json.toString();
+    }
+
+    private void emitCounter(String name, long value) {
+        var event = new CounterEvent();
+
+        if (event.shouldCommit()) {
+            event.tool = tool;
+            event.counter = name;
+            event.value = value;
+            event.commit();
+        }
+    }
+
+    // Notes the heap in use, if it is the most so far.
+    private synchronized void sampleHeap() {
+        peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+    }
+}
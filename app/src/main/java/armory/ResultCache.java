@@ -0,0 +1,291 @@
+package armory;
+
+import armory.types.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An on-disk cache of build results.  Each entry is keyed by a SHA-256
+ * hash of the pieces searched, in order, together with the weights, the
+ * minimum stats, the limit, and whether the suits were grouped by
+ * exotic; so any change to the inventory or the query misses.  An entry
+ * stores each suit as the indices of its pieces in the searched list.
+ *
+ * <p>The cache is a directory with one file per entry.  A hit touches
+ * the entry's file, and storing an entry evicts the least recently used
+ * entries while the directory exceeds its size cap.</p>
+ */
+public class ResultCache {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    /** The default cache directory. */
+    public static final File DEFAULT_DIR =
+        new File(System.getProperty("user.home"), ".armory/cache");
+
+    /** The default cap on the total size of the entries, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 4L << 20;
+
+    private static final int MAGIC = 0x41524D43; // "ARMC"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".result";
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The cache directory
+    private final File dir;
+
+    // The cap on the total size of the entries, in bytes
+    private final long maxBytes;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a cache in the given directory, which is created on demand.
+     * @param dir The directory
+     * @param maxBytes The cap on the total size of the entries, in bytes
+     */
+    public ResultCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Computes the key for a query.
+     * @param pieces The pieces searched, in order
+     * @param weights The stat weights
+     * @param minStats The minimum acceptable stats
+     * @param limit The maximum number of suits per group
+     * @param byExotic Whether the suits are grouped by exotic
+     * @return The key, as a hex string
+     */
+    public static String key(
+        List<Armor> pieces,
+        StatWeights weights,
+        StatMap minStats,
+        int limit,
+        boolean byExotic
+    ) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is unavailable", ex);
+        }
+
+        // FIRST, the query.
+        var buffer = ByteBuffer.allocate(256);
+        buffer.putInt(VERSION);
+        buffer.putInt(limit);
+        buffer.put((byte)(byExotic ? 1 : 0));
+
+        for (var stat : Stat.values()) {
+            // Adding 0.0 turns -0.0 into 0.0.
+            buffer.putLong(Double.doubleToLongBits(weights.get(stat) + 0.0));
+            buffer.putInt(minStats.get(stat));
+        }
+
+        buffer.putInt(pieces.size());
+        digest.update(buffer.flip());
+
+        // NEXT, the pieces.
+        for (var piece : pieces) {
+            var name = piece.name().getBytes(StandardCharsets.UTF_8);
+
+            buffer.clear();
+            buffer.put((byte)piece.type().ordinal());
+            buffer.put((byte)piece.rarity().ordinal());
+
+            for (var stat : Stat.values()) {
+                buffer.putInt(piece.get(stat));
+            }
+
+            buffer.putInt(name.length);
+            digest.update(buffer.flip());
+            digest.update(name);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Gets the stored result for the key, if any.
+     * @param key The key
+     * @param pieces The pieces searched, in order
+     * @return The groups of suits, or empty on a miss.
+     */
+    public Optional<List<BuildEngine.ExoticGroup>> get(
+        String key,
+        List<Armor> pieces
+    ) {
+        var file = entry(key);
+
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        try {
+            var groups = decode(ByteBuffer.wrap(Files.readAllBytes(file.toPath())),
+                pieces);
+            file.setLastModified(System.currentTimeMillis());
+            return Optional.of(groups);
+        } catch (IOException | BufferUnderflowException |
+                 IndexOutOfBoundsException | IllegalArgumentException ex)
+        {
+            // An unreadable entry is a miss.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the result for the key, and evicts the least recently used
+     * entries if the cache is over its size cap.  As an unreadable entry
+     * is a miss, an entry that cannot be written is simply not stored.
+     * @param key The key
+     * @param pieces The pieces searched, in order
+     * @param groups The groups of suits
+     * @return true if the entry was stored, and false otherwise.
+     */
+    public boolean put(
+        String key,
+        List<Armor> pieces,
+        List<BuildEngine.ExoticGroup> groups
+    ) {
+        File temp = null;
+
+        try {
+            Files.createDirectories(dir.toPath());
+
+            temp = File.createTempFile("entry", ".tmp", dir);
+            Files.write(temp.toPath(), encode(pieces, groups));
+            Files.move(temp.toPath(), entry(key).toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+            evict();
+            return true;
+        } catch (IOException ex) {
+            if (temp != null) {
+                temp.delete();
+            }
+            return false;
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private File entry(String key) {
+        return new File(dir, key + SUFFIX);
+    }
+
+    // Deletes the least recently used entries until the total size is
+    // within the cap.
+    private void evict() {
+        var files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+
+        if (files == null) {
+            return;
+        }
+
+        var total = Arrays.stream(files).mapToLong(File::length).sum();
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        for (int i = 0; i < files.length - 1 && total > maxBytes; i++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    // Layout: MAGIC, VERSION, the number of groups, then for each group
+    // the index of its exotic or -1, the number of suits, and the piece
+    // indices of each suit in type order.
+    private static byte[] encode(
+        List<Armor> pieces,
+        List<BuildEngine.ExoticGroup> groups
+    ) {
+        var index = new IdentityHashMap<Armor,Integer>();
+
+        for (int i = 0; i < pieces.size(); i++) {
+            index.put(pieces.get(i), i);
+        }
+
+        var size = 3 * Integer.BYTES;
+
+        for (var group : groups) {
+            size += 2 * Integer.BYTES +
+                group.suits().size() * Type.values().length * Integer.BYTES;
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(groups.size());
+
+        for (var group : groups) {
+            buffer.putInt(group.exotic() != null ? index.get(group.exotic()) : -1);
+            buffer.putInt(group.suits().size());
+
+            for (var suit : group.suits()) {
+                for (var type : Type.values()) {
+                    buffer.putInt(index.get(suit.get(type)));
+                }
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static List<BuildEngine.ExoticGroup> decode(
+        ByteBuffer buffer,
+        List<Armor> pieces
+    ) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IllegalArgumentException("Unsupported cache entry");
+        }
+
+        var groups = new ArrayList<BuildEngine.ExoticGroup>();
+        var groupCount = buffer.getInt();
+
+        for (int g = 0; g < groupCount; g++) {
+            var exotic = buffer.getInt();
+            var suits = new ArrayList<Suit>();
+            var suitCount = buffer.getInt();
+
+            for (int s = 0; s < suitCount; s++) {
+                suits.add(new Suit(
+                    pieces.get(buffer.getInt()),
+                    pieces.get(buffer.getInt()),
+                    pieces.get(buffer.getInt()),
+                    pieces.get(buffer.getInt())));
+            }
+
+            groups.add(new BuildEngine.ExoticGroup(
+                exotic >= 0 ? pieces.get(exotic) : null, suits));
+        }
+
+        return groups;
+    }
+}
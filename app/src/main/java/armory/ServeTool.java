@@ -0,0 +1,451 @@
+package armory;
+
+import armory.types.*;
+import armory.util.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP service that answers list, build, and import queries with
+ * JSON.  The armory file is loaded once and shared by all requests; each
+ * build query has its own options, weights, and minimums.  Requests run
+ * on virtual threads where the JVM provides them, and otherwise on a
+ * pool of platform threads.
+ */
+public class ServeTool implements Tool {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    // The default port
+    private static final int DEFAULT_PORT = 8080;
+
+    // Build options that must not come from a request
+    private static final Set<String> LOCAL_BUILD_OPTIONS =
+        Set.of("-cache", "-cachedir", "-profile", "-profilejson");
+
+    // The import options a request may give
+    private static final Set<String> IMPORT_OPTIONS =
+        Set.of("-class", "-columnar", "-threads");
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The name of the armory file
+    private String fileName;
+
+    // The loaded armory, shared by all requests
+    private Armory armory;
+
+    // The build engines, by the list of pieces they were built from
+    private final Map<List<Armor>,BuildEngine> engines = new ConcurrentHashMap<>();
+
+    // The port to listen on
+    private int port = DEFAULT_PORT;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    public ServeTool() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Application Code
+
+    @Override public String usage() {
+        return "armory serve <armory.dat> [options...]";
+    }
+
+    @Override public String oneLiner() {
+        return "Serves list, build, and import queries over HTTP.";
+    }
+
+    @Override public String help() {
+        return """
+Loads the armory file once and answers queries about it with JSON, on
+the local host only, until killed.  The endpoints are as follows:
+
+    GET  /list          -- The pieces of armor, the dominated pieces, and
+                           each type's dominance layers.
+    GET  /build?opts    -- The best suits of armor.  The query parameters
+                           are the "armory build" options without the
+                           leading hyphen, e.g., /build?limit=10&minmob=30
+                           or /build?byexotic.  -cache, -cachedir,
+                           -profile, and -profilejson are not allowed,
+                           and -threads is capped at the number of
+                           processors.
+    POST /import?opts   -- Converts the DIM armor CSV file in the request
+                           body, given the "armory import" options -class,
+                           -columnar, and -threads in the same way.
+
+The options are as follows:
+
+    -port num      -- The port to listen on, default is 8080.
+""";
+    }
+
+    /**
+     * Invokes the tool given the arguments.
+     *
+     * @param args The command line arguments for this tool
+     */
+    public void start(Deque<String> args) {
+        if (args.isEmpty()) {
+            System.out.println("Usage: " + usage());
+            System.exit(1);
+        }
+
+        fileName = args.poll();
+        parseOptions(args);
+        armory = Armory.open(new File(fileName));
+
+        try {
+            var server = HttpServer.create(
+                new InetSocketAddress("localhost", port), 0);
+
+            server.createContext("/list", exchange ->
+                respond(exchange, "GET", () -> listJson()));
+            server.createContext("/build", exchange ->
+                respond(exchange, "GET", () -> buildJson(exchange)));
+            server.createContext("/import", exchange ->
+                respond(exchange, "POST", () -> importJson(exchange)));
+            server.setExecutor(requestExecutor());
+            server.start();
+        } catch (IOException ex) {
+            throw new AppError("Could not start server: " + ex.getMessage());
+        }
+
+        println("Serving " + fileName + " at http://localhost:" + port + "/");
+    }
+
+    //-------------------------------------------------------------------------
+    // Endpoints
+
+    // A request handler that returns the JSON response body.
+    private interface Handler {
+        String handle() throws IOException;
+    }
+
+    // Runs the handler if the method is allowed, and sends its response,
+    // or an error object.
+    private void respond(HttpExchange exchange, String method, Handler handler)
+        throws IOException
+    {
+        int status;
+        String body;
+
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                status = 405;
+                body = error("Method not allowed: " +
+                    exchange.getRequestMethod());
+            } else if (!exchange.getRequestURI().getPath().equals(
+                exchange.getHttpContext().getPath()))
+            {
+                status = 404;
+                body = error("Not found: " + exchange.getRequestURI().getPath());
+            } else {
+                status = 200;
+                body = handler.handle();
+            }
+        } catch (AppError ex) {
+            status = 400;
+            body = error(ex.getMessage());
+        } catch (Exception ex) {
+            status = 500;
+            body = error("Internal error: " + ex);
+        }
+
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+            "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String listJson() {
+        var pieces = armory.getPieces();
+        var layers = ListTool.layers(pieces);
+        var dominated = ListTool.dominated(layers);
+        var json = new JsonWriter();
+
+        json.beginObject();
+        json.name("file").value(fileName);
+        json.name("pieces");
+        armorArray(json, pieces);
+        json.name("dominated");
+        armorArray(json, pieces.stream().filter(dominated::contains).toList());
+        json.name("layers").beginObject();
+        layers.forEach((type, typeLayers) -> {
+            json.name(type.name()).beginArray();
+            typeLayers.forEach(layer -> armorArray(json, layer));
+            json.endArray();
+        });
+        json.endObject();
+        json.endObject();
+
+        return json.toString();
+    }
+
+    private String buildJson(HttpExchange exchange) {
+        var opts = options(exchange);
+
+        for (var opt : opts) {
+            if (LOCAL_BUILD_OPTIONS.contains(opt)) {
+                throw new AppError("Option not available: " + opt);
+            }
+        }
+
+        var query = new BuildQuery(armory);
+        query.parseOptions(opts);
+
+        var result = query.run(armory,
+            pieces -> engines.computeIfAbsent(pieces, BuildEngine::new));
+        var weights = query.getWeights();
+        var json = new JsonWriter();
+
+        json.beginObject();
+        json.name("file").value(fileName);
+        json.name("suitCount").value(result.suitCount());
+
+        if (result.prefiltered() >= 0) {
+            json.name("prefiltered").value(result.prefiltered());
+        }
+
+        json.name("weights").beginObject();
+        for (var stat : Stat.values()) {
+            json.name(stat.name()).value(weights.get(stat));
+        }
+        json.endObject();
+
+        json.name("minStats");
+        stats(json, query.getMinStats());
+
+        json.name("current");
+        if (result.current() != null) {
+            suit(json, result.current(), weights);
+        } else {
+            json.nullValue();
+        }
+
+        json.name("groups").beginArray();
+        for (var group : result.groups()) {
+            json.beginObject();
+            json.name("exotic");
+            if (group.exotic() != null) {
+                armor(json, group.exotic());
+            } else {
+                json.nullValue();
+            }
+            json.name("suits").beginArray();
+            group.suits().forEach(s -> suit(json, s, weights));
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+
+        if (result.unused() != null) {
+            json.name("unused");
+            armorArray(json, result.unused());
+        }
+
+        json.endObject();
+
+        return json.toString();
+    }
+
+    private String importJson(HttpExchange exchange) throws IOException {
+        var opts = options(exchange);
+
+        for (var opt : opts) {
+            if (opt.startsWith("-") && !IMPORT_OPTIONS.contains(opt)) {
+                throw new AppError("Option not available: " + opt);
+            }
+        }
+
+        var tool = new ImportTool();
+        tool.parseOptions(opts);
+
+        var csvFile = File.createTempFile("armory", ".csv");
+
+        try {
+            try (var in = exchange.getRequestBody()) {
+                Files.copy(in, csvFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            var pieces = tool.convert(csvFile);
+            var json = new JsonWriter();
+
+            json.beginObject();
+            json.name("pieces");
+            armorArray(json, pieces);
+
+            if (tool.getCharacterClass() != null) {
+                json.name("equipped");
+                armorArray(json, tool.getEquipped());
+                json.name("loadouts").beginObject();
+                tool.getLoadoutMap().forEach((name, suit) -> {
+                    json.name(name);
+                    armorArray(json, suit);
+                });
+                json.endObject();
+            }
+
+            json.endObject();
+
+            return json.toString();
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // JSON Helpers
+
+    private static String error(String message) {
+        return new JsonWriter().beginObject()
+            .name("error").value(message)
+            .endObject()
+            .toString();
+    }
+
+    private static void armorArray(JsonWriter json, List<Armor> pieces) {
+        json.beginArray();
+        pieces.forEach(piece -> armor(json, piece));
+        json.endArray();
+    }
+
+    private static void armor(JsonWriter json, Armor piece) {
+        json.beginObject();
+        json.name("type").value(piece.type().name());
+        json.name("rarity").value(piece.rarity().name());
+        json.name("name").value(piece.name());
+        json.name("stats");
+        stats(json, piece);
+        json.name("total").value(piece.total());
+        json.endObject();
+    }
+
+    private static void suit(JsonWriter json, Suit suit, StatWeights weights) {
+        json.beginObject();
+        json.name("name").value(suit.getName());
+        json.name("stats");
+        stats(json, suit);
+        json.name("total").value(suit.total());
+        json.name("score").value(suit.weightedSum(weights));
+        json.name("pieces").beginArray();
+        Type.forEach(type -> armor(json, suit.get(type)));
+        json.endArray();
+        json.endObject();
+    }
+
+    private static void stats(JsonWriter json, StatInfo info) {
+        json.beginObject();
+        for (var stat : Stat.values()) {
+            json.name(stat.name()).value(info.stat(stat));
+        }
+        json.endObject();
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Converts the request's query parameters into command line options:
+    // "limit=10" becomes "-limit 10", and "byexotic" becomes "-byexotic".
+    private static Deque<String> options(HttpExchange exchange) {
+        var opts = new ArrayDeque<String>();
+        var query = exchange.getRequestURI().getRawQuery();
+
+        if (query == null || query.isEmpty()) {
+            return opts;
+        }
+
+        for (var param : query.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+
+            var eq = param.indexOf('=');
+            var name = eq >= 0 ? param.substring(0, eq) : param;
+            opts.add("-" + URLDecoder.decode(name, StandardCharsets.UTF_8));
+
+            if (eq >= 0 && eq < param.length() - 1) {
+                opts.add(URLDecoder.decode(param.substring(eq + 1),
+                    StandardCharsets.UTF_8));
+            }
+        }
+
+        return opts;
+    }
+
+    // Gets an executor that runs each request on its own virtual thread,
+    // if the JVM supports them, or else on a cached pool of threads.
+    private static ExecutorService requestExecutor() {
+        try {
+            var factory = Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void parseOptions(Deque<String> opts) throws AppError {
+        while (!opts.isEmpty()) {
+            var opt = opts.poll();
+
+            if (!opt.startsWith("-")) {
+                throw new AppError("Expected an option: " + opt);
+            }
+
+            switch (opt) {
+                case "-port" ->
+                    port = requirePort(opt, opts);
+                default ->
+                    throw new AppError("Unknown option: " + opt);
+            }
+        }
+    }
+
+    private int requirePort(String opt, Deque<String> opts)
+        throws AppError
+    {
+        if (opts.isEmpty()) {
+            throw new AppError("Missing value for " + opt);
+        }
+
+        var valueString = opts.poll();
+
+        try {
+            var value = Integer.parseInt(valueString);
+
+            if (value < 1 || value > 65535) {
+                throw new AppError("Invalid " + opt + " value: " + valueString);
+            }
+
+            return value;
+        } catch (Exception ex) {
+            throw new AppError("Invalid " + opt + " value: " + valueString);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package armory;
+
+import armory.types.AppError;
+import armory.types.Armor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An interactive session that loads an armory file once and answers
+ * repeated "build" and "list" commands against it.  The build engines,
+ * with their per-type piece lists and pair tables, are kept from one
+ * command to the next.
+ */
+public class ShellTool implements Tool {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The name of the armory file
+    private String fileName;
+
+    // The loaded armory
+    private Armory armory;
+
+    // The build engines, by the list of pieces they were built from
+    private final Map<List<Armor>,BuildEngine> engines = new HashMap<>();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    public ShellTool() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Application Code
+
+    @Override public String usage() {
+        return "armory shell <armory.dat>";
+    }
+
+    @Override public String oneLiner() {
+        return "Runs build and list commands interactively.";
+    }
+
+    @Override public String help() {
+        return """
+Loads the armory file once, and then reads commands from standard input
+until end of file or "quit".  Later queries reuse the loaded pieces and
+the search tables built by earlier ones, and so answer quickly.  The
+commands are as follows:
+
+    build [options...] -- As for "armory build", with the same options;
+                          weights and minimums start from the file's
+                          values for each command.
+    list               -- As for "armory list".
+    reload             -- Reloads the armory file.
+    help               -- Lists the commands.
+    quit               -- Ends the session.
+""";
+    }
+
+    /**
+     * Invokes the tool given the arguments.
+     *
+     * @param args The command line arguments for this tool
+     */
+    public void start(Deque<String> args) {
+        if (args.size() != 1) {
+            System.out.println("Usage: " + usage());
+            System.exit(1);
+        }
+
+        fileName = args.poll();
+        load();
+
+        var in = new BufferedReader(new InputStreamReader(System.in));
+
+        try {
+            while (true) {
+                System.out.print("armory> ");
+                System.out.flush();
+
+                var line = in.readLine();
+
+                if (line == null) {
+                    println();
+                    break;
+                }
+
+                try {
+                    if (!execute(split(line))) {
+                        break;
+                    }
+                } catch (AppError ex) {
+                    println("Error: " + ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            throw new AppError("I/O Error reading commands: " + ex.getMessage());
+        }
+    }
+
+    // Executes one command.  Returns false if the session should end.
+    private boolean execute(Deque<String> words) throws AppError {
+        if (words.isEmpty()) {
+            return true;
+        }
+
+        var command = words.poll();
+
+        switch (command) {
+            case "build" -> new BuildTool().build(fileName, armory,
+                pieces -> engines.computeIfAbsent(pieces, BuildEngine::new),
+                words);
+            case "list" -> {
+                requireNoArguments(command, words);
+                new ListTool().list(fileName, armory);
+            }
+            case "reload" -> {
+                requireNoArguments(command, words);
+                load();
+            }
+            case "help" -> println(help());
+            case "quit", "exit" -> {
+                return false;
+            }
+            default -> throw new AppError("Unknown command: " + command);
+        }
+
+        return true;
+    }
+
+    // Loads the armory, discarding any engines built from the old one.
+    private void load() throws AppError {
+        armory = Armory.open(new File(fileName));
+        engines.clear();
+        println("Loaded " + armory.getPieces().size() + " pieces from " +
+            fileName + ".");
+    }
+
+    private void requireNoArguments(String command, Deque<String> words)
+        throws AppError
+    {
+        if (!words.isEmpty()) {
+            throw new AppError("Unexpected arguments to " + command + ": " +
+                String.join(" ", words));
+        }
+    }
+
+    // Splits the line into words at whitespace.  A word may be enclosed
+    // in double quotes, in which case it may contain whitespace.
+    private Deque<String> split(String line) throws AppError {
+        var words = new ArrayDeque<String>();
+        var i = 0;
+
+        while (i < line.length()) {
+            if (Character.isWhitespace(line.charAt(i))) {
+                i++;
+            } else if (line.charAt(i) == '"') {
+                var end = line.indexOf('"', i + 1);
+
+                if (end == -1) {
+                    throw new AppError("Unterminated double-quote");
+                }
+
+                words.add(line.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                var start = i;
+
+                while (i < line.length() &&
+                    !Character.isWhitespace(line.charAt(i)))
+                {
+                    i++;
+                }
+
+                words.add(line.substring(start, i));
+            }
+        }
+
+        return words;
+    }
+}
@@ -0,0 +1,212 @@
+package armory;
+
+import armory.types.Armor;
+import armory.types.Stat;
+import armory.types.StatInfo;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Dominance analysis: finds the items that are not dominated, stat for
+ * stat, by any other item.
+ */
+public class Skyline {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    private static final Stat[] STATS = Stat.values();
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    private Skyline() {
+        // Not instantiable
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Gets the items that are not dominated by any other item, in their
+     * original order.  Of several items with identical stats, only the
+     * first is kept.
+     *
+     * <p>The items are sorted by total, highest first, so that an item
+     * can only be dominated by an item that precedes it; each item is then
+     * compared only against the frontier found so far.</p>
+     * @param items The items
+     * @param <T> The item type
+     * @return The non-dominated items
+     */
+    public static <T extends StatInfo> List<T> frontier(List<T> items) {
+        var sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingInt(StatInfo::total).reversed());
+
+        var frontier = new ArrayList<T>();
+
+        for (var item : sorted) {
+            if (frontier.stream().noneMatch(f -> f.dominates(item))) {
+                frontier.add(item);
+            }
+        }
+
+        var kept = Collections.newSetFromMap(new IdentityHashMap<T,Boolean>());
+        kept.addAll(frontier);
+
+        return items.stream().filter(kept::contains).toList();
+    }
+
+    /**
+     * Sorts the items into dominance layers.  Layer 1 is the frontier:
+     * the items that no other item strictly dominates, being at least as
+     * good in every stat and better in some.  Layer 2 is the frontier of
+     * the items that remain, and so on.  Items with identical stats are
+     * in the same layer.  Each layer is in the items' original order.
+     *
+     * <p>The distinct stat vectors are sorted by total, highest first, so
+     * that a vector's dominators all precede it.  A vector dominated by
+     * a member of layer k is also dominated by a member of each layer
+     * before k, so its layer is found by binary search over the layers,
+     * comparing it only against the members of the layers probed.</p>
+     * @param items The items
+     * @param <T> The item type
+     * @return The layers, frontier first
+     */
+    public static <T extends StatInfo> List<List<T>> layers(List<T> items) {
+        // FIRST, get the distinct stat vectors.
+        var vectors = new ArrayList<>(items.stream()
+            .map(Vector::of)
+            .collect(Collectors.toCollection(HashSet::new)));
+        vectors.sort(Comparator.comparingInt(Vector::total).reversed());
+
+        // NEXT, assign each vector to a layer.
+        var fronts = new ArrayList<List<int[]>>();
+        var layerOf = new HashMap<Vector,Integer>();
+
+        for (var vector : vectors) {
+            var stats = vector.stats();
+            var lo = 0;
+            var hi = fronts.size();
+
+            while (lo < hi) {
+                var mid = (lo + hi) >>> 1;
+
+                if (isDominated(stats, fronts.get(mid))) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            if (lo == fronts.size()) {
+                fronts.add(new ArrayList<>());
+            }
+
+            fronts.get(lo).add(stats);
+            layerOf.put(vector, lo);
+        }
+
+        // NEXT, collect the items in their original order.
+        var result = new ArrayList<List<T>>();
+        fronts.forEach(front -> result.add(new ArrayList<>()));
+        items.forEach(item -> result.get(layerOf.get(Vector.of(item))).add(item));
+
+        return result;
+    }
+
+    /**
+     * Gets the items that are dominated by some other item, being no
+     * better in any stat: every item below the first layer, and each item
+     * in the first layer with the same stats as another.
+     * @param layers The items' layers, as returned by {@link #layers(List)}
+     * @param <T> The item type
+     * @return The dominated items, by layer
+     */
+    public static <T extends StatInfo> List<T> dominated(List<List<T>> layers) {
+        var result = new ArrayList<T>();
+
+        if (layers.isEmpty()) {
+            return result;
+        }
+
+        var counts = new HashMap<Vector,Integer>();
+        layers.get(0).forEach(item -> counts.merge(Vector.of(item), 1, Integer::sum));
+        layers.get(0).stream()
+            .filter(item -> counts.get(Vector.of(item)) > 1)
+            .forEach(result::add);
+
+        layers.subList(1, layers.size()).forEach(result::addAll);
+
+        return result;
+    }
+
+    /**
+     * Removes the pieces of armor that are dominated by another piece of
+     * the same type and rarity.  No suit made with a dominated piece can
+     * have better stats than the same suit made with the piece that
+     * dominates it.  Exotics are only compared with exotics, so that
+     * replacing a piece never changes the number of exotics in a suit.
+     * @param pieces The pieces of armor
+     * @return The remaining pieces, in their original order.
+     */
+    public static List<Armor> dominantPieces(List<Armor> pieces) {
+        var groups = new HashMap<String,List<Armor>>();
+
+        pieces.forEach(piece ->
+            groups.computeIfAbsent(piece.type() + " " + piece.rarity(),
+                dummy -> new ArrayList<>())
+            .add(piece));
+
+        var kept = Collections.newSetFromMap(new IdentityHashMap<Armor,Boolean>());
+        groups.values().forEach(group -> kept.addAll(frontier(group)));
+
+        return pieces.stream().filter(kept::contains).toList();
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // An item's stats, in Stat order, as a hash key.
+    private record Vector(int[] stats, int total) {
+        static Vector of(StatInfo item) {
+            var stats = new int[STATS.length];
+
+            for (int s = 0; s < STATS.length; s++) {
+                stats[s] = item.stat(STATS[s]);
+            }
+
+            return new Vector(stats, item.total());
+        }
+
+        @Override public boolean equals(Object other) {
+            return other instanceof Vector vector &&
+                Arrays.equals(stats, vector.stats);
+        }
+
+        @Override public int hashCode() {
+            return Arrays.hashCode(stats);
+        }
+    }
+
+    // Is the stat vector dominated by any member of the front?  The
+    // vectors are distinct, so this is strict dominance.
+    private static boolean isDominated(int[] stats, List<int[]> front) {
+        for (var other : front) {
+            var dominates = true;
+
+            for (int s = 0; s < stats.length; s++) {
+                if (other[s] < stats[s]) {
+                    dominates = false;
+                    break;
+                }
+            }
+
+            if (dominates) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
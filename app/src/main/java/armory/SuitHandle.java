@@ -0,0 +1,57 @@
+package armory;
+
+import armory.types.Type;
+
+/**
+ * A compact, index-based representation of a suit of armor: the indices
+ * of its four pieces in the engine's per-type piece lists, packed into a
+ * single long, 16 bits per type, HEAD in the high bits.  Handles sort in
+ * the same order as the nested-loop enumeration of suits, so a handle
+ * doubles as the suit's enumeration order.
+ */
+public final class SuitHandle {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    /** The maximum number of pieces of any one type. */
+    public static final int MAX_PIECES = 1 << 15;
+
+    private static final int BITS = 16;
+    private static final long MASK = (1L << BITS) - 1;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    private SuitHandle() {
+        // Not instantiable
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Packs the piece indices into a handle.
+     * @param head The index of the HEAD piece
+     * @param arms The index of the ARMS piece
+     * @param body The index of the BODY piece
+     * @param legs The index of the LEGS piece
+     * @return The handle
+     */
+    public static long of(int head, int arms, int body, int legs) {
+        return ((long)head << 3 * BITS)
+            | ((long)arms << 2 * BITS)
+            | ((long)body << BITS)
+            | legs;
+    }
+
+    /**
+     * Gets the index of the piece of the given type.
+     * @param handle The handle
+     * @param type The type
+     * @return The index
+     */
+    public static int index(long handle, Type type) {
+        var shift = (Type.values().length - 1 - type.ordinal()) * BITS;
+        return (int)((handle >>> shift) & MASK);
+    }
+}
@@ -0,0 +1,401 @@
+package armory;
+
+import armory.types.*;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic vaults of armor for one character class, for scale
+ * testing, and writes them as DIM armor CSV files or armory files.  The
+ * stats are rolled the way the game rolls armor 2.0 base stats: each
+ * piece has two groups of three stats, MOB/RES/REC and DIS/INT/STR; each
+ * group totals about 32, and each stat is from 2 to 30, often 2.  The same
+ * seed always generates the same vault.
+ */
+public class VaultGenerator {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    // The range of a base stat
+    private static final int MIN_STAT = 2;
+    private static final int MAX_STAT = 30;
+
+    // The distribution of a stat group's total
+    private static final int GROUP_MIN = 24;
+    private static final int GROUP_MAX = 36;
+    private static final double GROUP_MEAN = 32.0;
+    private static final double GROUP_DEVIATION = 2.5;
+
+    // The chance that one stat of a group is pinned at the minimum
+    private static final double PINNED_CHANCE = 0.5;
+
+    // The number of pieces of each type carried, besides the equipped one
+    private static final int MAX_CARRIED = 2;
+
+    // The names the pieces are made from
+    private static final List<String> SET_NAMES = List.of(
+        "Ashen Vigil", "Brightsteel", "Cinder Pact", "Dawnward",
+        "Emberline", "Frostmarch", "Gloamwalk", "Hollow Crown",
+        "Ironbloom", "Jadewake", "Kindled Oath", "Lumen Circuit");
+    private static final List<String> EXOTIC_NAMES = List.of(
+        "Starfall", "Sunwake", "Voidheart", "Stormcaller",
+        "Riftborn", "Nightglass", "Dawnbreaker", "Gravecourt");
+
+    // The DIM columns, as written by DIM
+    private static final List<String> COLUMNS = List.of(
+        "Name", "Hash", "Id", "Tag", "Tier", "Type", "Source", "Equippable",
+        "Power", "Power Limit", "Masterwork Type", "Masterwork Tier",
+        "Owner", "Armor2.0", "Locked", "Equipped", "Year", "Season",
+        "Event", "Mobility", "Resilience", "Recovery", "Discipline",
+        "Intellect", "Strength", "Total", "Custom", "Mobility (Base)",
+        "Resilience (Base)", "Recovery (Base)", "Discipline (Base)",
+        "Intellect (Base)", "Strength (Base)", "Total (Base)",
+        "Custom (Base)", "Seasonal Mod", "Loadouts", "Notes");
+
+    // The DIM name of each type
+    private static final Map<Type,String> DIM_TYPES = Map.of(
+        Type.HEAD, "Helmet",
+        Type.ARMS, "Gauntlets",
+        Type.BODY, "Chest Armor",
+        Type.LEGS, "Leg Armor");
+
+    // The noun each piece's name ends with, by type
+    private static final Map<Type,String> NOUNS = Map.of(
+        Type.HEAD, "Helm",
+        Type.ARMS, "Gauntlets",
+        Type.BODY, "Plate",
+        Type.LEGS, "Greaves");
+
+    // The light level of the generated pieces, and of their owner
+    private static final int POWER = 1800;
+
+    //-------------------------------------------------------------------------
+    // Types
+
+    /**
+     * A generated piece of armor, with its place in the player's gear.
+     * @param piece The piece, with its DIM name
+     * @param equipped Whether it is currently equipped
+     * @param carried Whether it is carried by the character, rather than
+     *                in the vault
+     * @param loadouts The names of the loadouts that include it
+     */
+    public record Item(
+        Armor piece,
+        boolean equipped,
+        boolean carried,
+        List<String> loadouts
+    ) {
+        /**
+         * Gets the piece as imported: its name is marked "*" if equipped
+         * and "-" if carried.
+         * @return The piece
+         */
+        public Armor imported() {
+            var prefix = equipped ? "*" : carried ? "-" : "";
+            var result = new Armor(piece.type(), piece.rarity(),
+                prefix + piece.name());
+
+            Stat.forEach(stat -> result.put(stat, piece.get(stat)));
+
+            return result;
+        }
+    }
+
+    /**
+     * A generated vault, in DIM's row order.
+     * @param characterClass The character class
+     * @param items The items
+     */
+    public record Vault(CharacterClass characterClass, List<Item> items) {
+        /**
+         * Gets the pieces of armor, with their DIM names.
+         * @return The pieces
+         */
+        public List<Armor> pieces() {
+            return items.stream().map(Item::piece).toList();
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    private final Random random;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates a generator.
+     * @param seed The random seed
+     */
+    public VaultGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    /**
+     * Generates a vault.  One piece of each type is equipped, and up to
+     * two more are carried; the rest are in the vault.  The equipped
+     * suit and each loadout have at most one exotic where the counts
+     * allow it.
+     * @param counts The number of pieces of each type, 1 or more
+     * @param exoticFraction The fraction of each type's pieces that are
+     *                       exotic, from 0.0 to 1.0
+     * @param characterClass The character class
+     * @param loadouts The number of loadouts
+     * @return The vault
+     * @throws AppError if a count is less than 1.
+     */
+    public Vault generate(
+        Map<Type,Integer> counts,
+        double exoticFraction,
+        CharacterClass characterClass,
+        int loadouts
+    ) throws AppError {
+        // FIRST, roll the pieces of each type.
+        var pieces = new EnumMap<Type,List<Armor>>(Type.class);
+
+        for (var type : Type.values()) {
+            var count = counts.getOrDefault(type, 0);
+
+            if (count < 1) {
+                throw new AppError("Expected at least one piece of type " +
+                    type + ", got " + count);
+            }
+
+            pieces.put(type, pieces(type, count,
+                (int)Math.round(count * exoticFraction)));
+        }
+
+        // NEXT, choose the equipped and carried pieces, and the loadouts.
+        // Pieces are compared by identity, as two may be alike.
+        var equipped = chooseSuit(pieces);
+        var carried = Collections.newSetFromMap(new IdentityHashMap<Armor,Boolean>());
+        var loadoutMap = new IdentityHashMap<Armor,List<String>>();
+
+        for (var type : Type.values()) {
+            var others = new ArrayList<>(pieces.get(type));
+            others.removeIf(piece -> piece == equipped.get(type));
+            Collections.shuffle(others, random);
+            carried.addAll(others.subList(0,
+                Math.min(random.nextInt(MAX_CARRIED + 1), others.size())));
+        }
+
+        for (int i = 1; i <= loadouts; i++) {
+            var name = "Loadout " + i;
+
+            chooseSuit(pieces).values().forEach(piece ->
+                loadoutMap.computeIfAbsent(piece, k -> new ArrayList<>())
+                    .add(name));
+        }
+
+        // NEXT, make the items, in random order.
+        var items = new ArrayList<Item>();
+
+        pieces.values().forEach(list -> list.forEach(piece ->
+            items.add(new Item(piece,
+                equipped.get(piece.type()) == piece,
+                carried.contains(piece),
+                loadoutMap.getOrDefault(piece, List.of())))));
+        Collections.shuffle(items, random);
+
+        return new Vault(characterClass, items);
+    }
+
+    /**
+     * Writes the vault as a DIM armor CSV file.
+     * @param vault The vault
+     * @param out The output stream
+     */
+    public void writeCsv(Vault vault, PrintStream out) {
+        out.println(String.join(",", COLUMNS));
+
+        var className = capitalize(vault.characterClass().name());
+        var owner = className + "(" + POWER + ")";
+
+        for (var item : vault.items()) {
+            var piece = item.piece();
+            var values = new LinkedHashMap<String,String>();
+
+            values.put("Name", piece.name());
+            values.put("Hash", String.valueOf(1_000_000_000L +
+                Integer.toUnsignedLong(piece.name().hashCode())));
+            values.put("Id", "\"" + (6_917_529_000_000_000_000L +
+                random.nextInt(Integer.MAX_VALUE)) + "\"");
+            values.put("Tier", piece.isExotic() ? "Exotic" : "Legendary");
+            values.put("Type", DIM_TYPES.get(piece.type()));
+            values.put("Equippable", className);
+            values.put("Power", String.valueOf(POWER));
+            values.put("Masterwork Tier", "10");
+            values.put("Owner", item.equipped() || item.carried() ? owner : "Vault");
+            values.put("Armor2.0", "true");
+            values.put("Locked", "false");
+            values.put("Equipped", String.valueOf(item.equipped()));
+
+            // Masterworked pieces get +2 in every stat.
+            var total = 0;
+
+            for (var stat : Stat.values()) {
+                var base = piece.get(stat);
+                var column = COLUMNS.get(COLUMNS.indexOf("Mobility") +
+                    stat.ordinal());
+
+                values.put(column, String.valueOf(base + 2));
+                values.put(column + " (Base)", String.valueOf(base));
+                total += base + 2;
+            }
+
+            values.put("Total", String.valueOf(total));
+            values.put("Total (Base)", String.valueOf(piece.total()));
+            values.put("Custom", "0");
+            values.put("Custom (Base)", "0");
+            values.put("Loadouts", String.join(", ", item.loadouts()));
+
+            var row = new ArrayList<String>();
+            COLUMNS.forEach(column ->
+                row.add(csvField(values.getOrDefault(column, ""))));
+            out.println(String.join(",", row));
+        }
+    }
+
+    /**
+     * Writes the vault as an armory file, just as "armory import" would
+     * write it given the vault's CSV file and class.
+     * @param vault The vault
+     * @param out The output stream
+     */
+    public void writeArmory(Vault vault, PrintStream out) {
+        var pieces = new ArrayList<Armor>();
+        var equipped = new ArrayList<Armor>();
+        var loadouts = new LinkedHashMap<String,List<Armor>>();
+
+        for (var item : vault.items()) {
+            var piece = item.imported();
+
+            if (item.equipped()) {
+                equipped.add(piece);
+            }
+
+            for (var loadout : item.loadouts()) {
+                loadouts.computeIfAbsent(loadout, k -> new ArrayList<>())
+                    .add(piece);
+            }
+
+            pieces.add(piece);
+        }
+
+        pieces.sort(ImportTool.IMPORT_COMPARATOR);
+        equipped.sort(Comparator.comparing(Armor::type));
+        loadouts.values().forEach(suit ->
+            suit.sort(Comparator.comparing(Armor::type)));
+
+        ImportTool.printArmory(out, vault.characterClass(), pieces,
+            equipped, loadouts);
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Rolls the pieces of one type, the exotics first.
+    private List<Armor> pieces(Type type, int count, int exotics) {
+        var result = new ArrayList<Armor>();
+
+        for (int i = 0; i < count; i++) {
+            var exotic = i < exotics;
+            var names = exotic ? EXOTIC_NAMES : SET_NAMES;
+            var name = names.get(random.nextInt(names.size())) + " " +
+                NOUNS.get(type);
+            var piece = new Armor(type,
+                exotic ? Rarity.EXOTIC : Rarity.LEGEND, name);
+            var stats = new int[Stat.COUNT];
+
+            rollGroup(stats, 0);
+            rollGroup(stats, 3);
+            Stat.forEach(stat -> piece.put(stat, stats[stat.ordinal()]));
+            result.add(piece);
+        }
+
+        return result;
+    }
+
+    // Rolls the three stats of a group, starting at the given stat
+    // ordinal.
+    private void rollGroup(int[] stats, int first) {
+        var total = (int)Math.round(
+            GROUP_MEAN + random.nextGaussian() * GROUP_DEVIATION);
+        total = Math.max(GROUP_MIN, Math.min(GROUP_MAX, total));
+
+        // The amount to share out over the minimum of each stat
+        var extra = total - 3 * MIN_STAT;
+        var range = MAX_STAT - MIN_STAT;
+        var shares = new int[3];
+
+        if (random.nextDouble() < PINNED_CHANCE) {
+            // One stat is pinned at the minimum; the others share the rest.
+            var pinned = random.nextInt(3);
+            var low = Math.max(0, extra - range);
+            var share = low + random.nextInt(Math.min(range, extra) - low + 1);
+
+            shares[(pinned + 1) % 3] = share;
+            shares[(pinned + 2) % 3] = extra - share;
+        } else {
+            do {
+                var a = random.nextInt(extra + 1);
+                var b = random.nextInt(extra + 1);
+
+                shares[0] = Math.min(a, b);
+                shares[1] = Math.max(a, b) - shares[0];
+                shares[2] = extra - Math.max(a, b);
+            } while (shares[0] > range || shares[1] > range || shares[2] > range);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            stats[first + i] = MIN_STAT + shares[i];
+        }
+    }
+
+    // Chooses one piece of each type, with at most one exotic unless some
+    // type has nothing else.
+    private Map<Type,Armor> chooseSuit(Map<Type,List<Armor>> pieces) {
+        var suit = new EnumMap<Type,Armor>(Type.class);
+        var exoticType = Type.values()[random.nextInt(Type.values().length)];
+
+        for (var type : Type.values()) {
+            var list = pieces.get(type);
+            var legends = list.stream().filter(a -> !a.isExotic()).toList();
+            var exotics = list.stream().filter(Armor::isExotic).toList();
+            var useExotic = legends.isEmpty() ||
+                (type == exoticType && !exotics.isEmpty());
+            var choices = useExotic ? exotics : legends;
+
+            suit.put(type, choices.get(random.nextInt(choices.size())));
+        }
+
+        return suit;
+    }
+
+    private static String capitalize(String name) {
+        return name.charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    // Quotes the CSV field if need be.
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        return value;
+    }
+}
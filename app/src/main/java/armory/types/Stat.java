@@ -12,6 +12,9 @@ public enum Stat {
     INT,
     STR;
 
+    /** The number of stats. */
+    public static final int COUNT = values().length;
+
     public static Stream<Stat> stream() {
         return Arrays.stream(values());
     }
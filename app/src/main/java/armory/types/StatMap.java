@@ -1,30 +1,95 @@
 package armory.types;
 
-import java.util.HashMap;
+import java.util.Arrays;
+
+/**
+ * A vector of stat values, stored as primitive ints indexed by
+ * {@link Stat#ordinal()}.
+ */
+public class StatMap implements StatInfo {
+    //------------------------------------------------------------------------
+    // Instance Variables
+
+    // The stat values, indexed by stat ordinal.
+    final int[] values = new int[Stat.COUNT];
+
+    //------------------------------------------------------------------------
+    // Constructor
 
-public class StatMap extends HashMap<Stat,Integer> implements StatInfo {
     /**
      * Creates a default stat map with 0 values.
      */
     public StatMap() {
-        Stat.forEach(s -> put(s, 0));
+        // Nothing to do
+    }
+
+    /**
+     * Creates a stat map with the same values as the given stats.
+     * @param other The other stats
+     */
+    public StatMap(StatInfo other) {
+        Stat.forEach(s -> values[s.ordinal()] = other.stat(s));
+    }
+
+    //------------------------------------------------------------------------
+    // StatMap API
+
+    /**
+     * Gets the value of the given stat.
+     * @param stat The stat
+     * @return The value
+     */
+    public int get(Stat stat) {
+        return values[stat.ordinal()];
+    }
+
+    /**
+     * Sets the value of the given stat.
+     * @param stat The stat
+     * @param value The value
+     */
+    public void put(Stat stat, int value) {
+        values[stat.ordinal()] = value;
+    }
+
+    /**
+     * Adds the other stats to this map, stat by stat.
+     * @param other The other stats
+     */
+    public void add(StatMap other) {
+        for (int i = 0; i < Stat.COUNT; i++) {
+            values[i] += other.values[i];
+        }
     }
 
+    //------------------------------------------------------------------------
+    // StatInfo API
+
     @Override
     public int stat(Stat stat) {
-        return get(stat);
+        return values[stat.ordinal()];
     }
 
     @Override
     public int total() {
-        return values().stream().mapToInt(i -> i).sum();
+        int sum = 0;
+
+        for (int i = 0; i < Stat.COUNT; i++) {
+            sum += values[i];
+        }
+
+        return sum;
     }
 
     @Override
     public double weightedSum(StatWeights weights) {
-        return entrySet().stream()
-            .mapToDouble(e -> weights.get(e.getKey()) * e.getValue())
-            .sum();
+        double sum = 0.0;
+
+        for (int i = 0; i < Stat.COUNT; i++) {
+            sum += weights.values[i] * values[i];
+        }
+
+        return StatWeights.round(sum);
     }
 
     @Override
@@ -36,9 +101,17 @@ public class StatMap extends HashMap<Stat,Integer> implements StatInfo {
 
     @Override
     public boolean dominates(StatInfo other) {
-        for (var e : entrySet()) {
-            if (e.getValue() < other.stat(e.getKey())) {
-                return false;
+        if (other instanceof StatMap map) {
+            for (int i = 0; i < Stat.COUNT; i++) {
+                if (values[i] < map.values[i]) {
+                    return false;
+                }
+            }
+        } else {
+            for (var s : Stat.values()) {
+                if (values[s.ordinal()] < other.stat(s)) {
+                    return false;
+                }
             }
         }
 
@@ -61,4 +134,22 @@ public class StatMap extends HashMap<Stat,Integer> implements StatInfo {
             stat(Stat.STR)
         );
     }
+
+    //------------------------------------------------------------------------
+    // Object API
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        StatMap map = (StatMap) o;
+
+        return Arrays.equals(values, map.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
 }
@@ -1,15 +1,75 @@
 package armory.types;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
- * A dictionary of weights for each stat.
+ * A vector of weights for each stat, stored as primitive doubles indexed
+ * by {@link Stat#ordinal()}.
  */
-public class StatWeights extends HashMap<Stat,Double> {
+public class StatWeights {
+    // The number of steps per unit in a rounded score
+    private static final double SCORE_SCALE = 1e6;
+
+    // The weights, indexed by stat ordinal.
+    final double[] values = new double[Stat.COUNT];
+
     /**
      * Creates a default object with all weights = 1.0.
      */
     public StatWeights() {
-        Stat.forEach(stat -> put(stat, 1.0));
+        Arrays.fill(values, 1.0);
+    }
+
+    /**
+     * Creates a copy of the given weights.
+     * @param other The weights to copy
+     */
+    public StatWeights(StatWeights other) {
+        System.arraycopy(other.values, 0, values, 0, values.length);
+    }
+
+    /**
+     * Gets the weight for the given stat.
+     * @param stat The stat
+     * @return The weight
+     */
+    public double get(Stat stat) {
+        return values[stat.ordinal()];
+    }
+
+    /**
+     * Sets the weight for the given stat.
+     * @param stat The stat
+     * @param weight The weight
+     */
+    public void put(Stat stat, double weight) {
+        values[stat.ordinal()] = weight;
+    }
+
+    /**
+     * Rounds a weighted sum to six decimal places, the precision at which
+     * scores are ranked.  Sums that are equal in exact arithmetic can
+     * differ in the last bits depending on how they were accumulated;
+     * rounded, they are equal, and so rank as ties.
+     * @param score The weighted sum
+     * @return The rounded sum
+     */
+    public static double round(double score) {
+        return Math.rint(score * SCORE_SCALE) / SCORE_SCALE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        StatWeights weights = (StatWeights) o;
+
+        return Arrays.equals(values, weights.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
     }
 }
@@ -1,6 +1,14 @@
 package armory.types;
 
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * A complete suit of armor: HEAD, ARMS, BODY, LEGS.
@@ -11,6 +19,12 @@ public class Suit extends HashMap<Type, Armor> implements StatInfo {
 
     private String name = "Suit";
 
+    // The total stats of the pieces, computed on demand and cleared by
+    // every method that changes the pieces; the key, value, and entry
+    // views are read-only, so that nothing else can.  Volatile, so that a
+    // suit shared between threads never exposes a partly summed total.
+    private transient volatile StatMap totals = null;
+
     //------------------------------------------------------------------------
     // Constructor
 
@@ -45,6 +59,142 @@ public class Suit extends HashMap<Type, Armor> implements StatInfo {
     }
 
 
+    //------------------------------------------------------------------------
+    // Map API
+
+    @Override
+    public Armor put(Type type, Armor armor) {
+        totals = null;
+        return super.put(type, armor);
+    }
+
+    @Override
+    public void putAll(Map<? extends Type, ? extends Armor> map) {
+        totals = null;
+        super.putAll(map);
+    }
+
+    @Override
+    public Armor putIfAbsent(Type type, Armor armor) {
+        totals = null;
+        return super.putIfAbsent(type, armor);
+    }
+
+    @Override
+    public Armor remove(Object type) {
+        totals = null;
+        return super.remove(type);
+    }
+
+    @Override
+    public boolean remove(Object type, Object armor) {
+        totals = null;
+        return super.remove(type, armor);
+    }
+
+    @Override
+    public void clear() {
+        totals = null;
+        super.clear();
+    }
+
+    @Override
+    public Armor replace(Type type, Armor armor) {
+        totals = null;
+        return super.replace(type, armor);
+    }
+
+    @Override
+    public boolean replace(Type type, Armor oldArmor, Armor newArmor) {
+        totals = null;
+        return super.replace(type, oldArmor, newArmor);
+    }
+
+    @Override
+    public void replaceAll(
+        BiFunction<? super Type, ? super Armor, ? extends Armor> function
+    ) {
+        totals = null;
+        super.replaceAll(function);
+    }
+
+    @Override
+    public Armor compute(
+        Type type,
+        BiFunction<? super Type, ? super Armor, ? extends Armor> function
+    ) {
+        totals = null;
+        return super.compute(type, function);
+    }
+
+    @Override
+    public Armor computeIfAbsent(
+        Type type,
+        Function<? super Type, ? extends Armor> function
+    ) {
+        totals = null;
+        return super.computeIfAbsent(type, function);
+    }
+
+    @Override
+    public Armor computeIfPresent(
+        Type type,
+        BiFunction<? super Type, ? super Armor, ? extends Armor> function
+    ) {
+        totals = null;
+        return super.computeIfPresent(type, function);
+    }
+
+    @Override
+    public Armor merge(
+        Type type,
+        Armor armor,
+        BiFunction<? super Armor, ? super Armor, ? extends Armor> function
+    ) {
+        totals = null;
+        return super.merge(type, armor, function);
+    }
+
+    @Override
+    public Set<Type> keySet() {
+        return Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Collection<Armor> values() {
+        return Collections.unmodifiableCollection(super.values());
+    }
+
+    @Override
+    public Set<Map.Entry<Type, Armor>> entrySet() {
+        // Collections.unmodifiableSet would still allow Entry.setValue.
+        var entries = super.entrySet();
+
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Type, Armor>> iterator() {
+                var iterator = entries.iterator();
+
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<Type, Armor> next() {
+                        return new SimpleImmutableEntry<>(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
     //------------------------------------------------------------------------
     // Stats API
 
@@ -83,17 +233,17 @@ public class Suit extends HashMap<Type, Armor> implements StatInfo {
         return stats().bareNumbers();
     }
 
-    // Gets the total stats
+    // Gets the total stats, summing the pieces only on first use.
     private StatInfo stats() {
-        var vec = new StatMap();
+        var result = totals;
 
-        values().forEach(armor -> {
-            for (var e : armor.entrySet()) {
-                vec.put(e.getKey(), e.getValue() + vec.get(e.getKey()));
-            }
-        });
+        if (result == null) {
+            result = new StatMap();
+            super.values().forEach(result::add);
+            totals = result;
+        }
 
-        return vec;
+        return result;
     }
 
     public String data() {
@@ -2,21 +2,45 @@ package armory.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
- * This class reads CSV files with the following characteristics:
+ * This class reads RFC 4180 CSV files with the following characteristics:
  *
  * <ul>
- *     <li>The first line is a row of column names.</li>
+ *     <li>The first record is a row of column names.</li>
  *     <li>Column values may be empty.</li>
- *     <li>String values may contain spaces but not commas.</li>
+ *     <li>Values may be enclosed in double quotes, in which case they may
+ *         contain commas, line breaks, and doubled double quotes ("")
+ *         standing for a single double quote.</li>
+ *     <li>Records may end with LF or CRLF.</li>
  * </ul>
+ *
+ * <p>Files can be streamed a row at a time with
+ * {@link #read(File, RowHandler)}, parsed in chunks on several threads
+ * with {@link #read(File, int, Supplier)}, or loaded into memory by the
+ * constructor.</p>
  */
 public class CSVReader {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    // The size of the read buffers
+    private static final int BUFFER_SIZE = 1 << 20;
 
     //-------------------------------------------------------------------------
     // Instance Variables
@@ -25,93 +49,302 @@ public class CSVReader {
     private final List<String> columns = new ArrayList<>();
 
     // The list of rows
-    private final List<List<String>> rows = new ArrayList<>();
+    private final List<String[]> rows = new ArrayList<>();
 
     //-------------------------------------------------------------------------
     // Constructor
 
     /**
-     * Reads the CSV file.
+     * Reads the CSV file into memory.
      * @param csvFile The file
      * @throws IOException If the file could not be read from disk
      * @throws CSVException If the file could not be parsed.
      */
     public CSVReader(File csvFile) throws IOException, CSVException {
-        // FIRST, open the file
-        var reader = new LineReader(csvFile);
+        read(csvFile, row -> {
+            if (columns.isEmpty()) {
+                columns.addAll(row.columns());
+            }
+            rows.add(row.values);
+        });
+    }
+
+    //-------------------------------------------------------------------------
+    // Streaming
 
-        if (reader.isEmpty()) {
-            throw new CSVException(1, "Input file is empty.");
+    /**
+     * Receives the rows of a CSV file as they are parsed.
+     */
+    public interface RowHandler {
+        /**
+         * Receives the column names, once, before the first data row.
+         * This is the place to bind a {@link Schema}.
+         * @param columns The column names
+         * @throws CSVException if the columns are unacceptable.
+         */
+        default void header(List<String> columns) throws CSVException {
+            // Nothing to do
         }
 
-        // NEXT, get the column names.
-        columns.addAll(parseColumnNames(reader.next()));
+        /**
+         * Handles one data row.  The row is only valid during the call.
+         * @param row The row
+         * @throws CSVException if the row is invalid.
+         */
+        void handle(Row row) throws CSVException;
+    }
 
-        // NEXT, get the rows of data.
-        while (!reader.isEmpty()) {
-            rows.add(parseRow(reader.lineNumber(), reader.next()));
+    /**
+     * Reads the CSV file through a large NIO buffer, passing each data row
+     * to the handler as soon as it is parsed.  Only the current row is
+     * held in memory.
+     * @param csvFile The file
+     * @param handler The row handler
+     * @throws IOException If the file could not be read from disk
+     * @throws CSVException If the file could not be parsed.
+     */
+    public static void read(File csvFile, RowHandler handler)
+        throws IOException, CSVException
+    {
+        try (var channel = FileChannel.open(csvFile.toPath(),
+            StandardOpenOption.READ))
+        {
+            new Parser(channel, 0, channel.size(), 1, null, handler).parse();
         }
     }
 
     /**
-     * Parses the column name line from the file.
-     * @param line The text of the line
-     * @return A list of the column names.
+     * Reads the CSV file on multiple threads.  The file is split into one
+     * byte range per thread, each beginning at a record boundary; quoted
+     * line breaks are taken into account.  Each range is parsed by its
+     * own handler, whose header() is called before its first row.  Line
+     * numbers are as for {@link #read(File, RowHandler)}, and if several
+     * ranges fail, the error from the earliest is thrown.
+     * @param csvFile The file
+     * @param threads The number of threads
+     * @param handlers Supplies a fresh handler for each range
+     * @param <R> The handler type
+     * @return The handlers, in file order
+     * @throws IOException If the file could not be read from disk
+     * @throws CSVException If the file could not be parsed.
      */
-    private List<String> parseColumnNames(String line) {
-        var scanner = new Scanner(line).useDelimiter(",");
-        var result = new ArrayList<String>();
+    public static <R extends RowHandler> List<R> read(
+        File csvFile,
+        int threads,
+        Supplier<R> handlers
+    ) throws IOException, CSVException {
+        try (var channel = FileChannel.open(csvFile.toPath(),
+            StandardOpenOption.READ))
+        {
+            // FIRST, parse the column names.
+            var chunks = new Chunker(channel).split(threads);
+            var header = new ArrayList<String>();
+            var headerEnd = chunks.get(0).start();
+
+            new Parser(channel, 0, headerEnd, 1, null, new RowHandler() {
+                @Override public void header(List<String> columns) {
+                    header.addAll(columns);
+                }
+
+                @Override public void handle(Row row) {
+                    // There are no rows
+                }
+            }).parse();
+
+            if (header.isEmpty()) {
+                // The file has nothing but blank lines.
+                return List.of();
+            }
+
+            var columns = List.copyOf(header);
+
+            // NEXT, parse the chunks.
+            var tasks = new ArrayList<Callable<R>>();
+
+            for (var chunk : chunks) {
+                tasks.add(() -> {
+                    var handler = handlers.get();
+                    handler.header(columns);
+                    new Parser(channel, chunk.start(), chunk.end(),
+                        chunk.lineNumber(), columns, handler).parse();
+                    return handler;
+                });
+            }
+
+            var executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threads, tasks.size())));
 
-        while (scanner.hasNext()) {
-            result.add(scanner.next());
+            try {
+                var result = new ArrayList<R>();
 
+                for (var future : executor.invokeAll(tasks)) {
+                    result.add(join(future));
+                }
+
+                return result;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading", ex);
+            } finally {
+                executor.shutdownNow();
+            }
         }
+    }
 
-        return result;
+    // Gets the future's result, rethrowing the task's exception as is.
+    private static <R> R join(Future<R> future)
+        throws IOException, CSVException, InterruptedException
+    {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            var cause = ex.getCause();
+
+            if (cause instanceof IOException io) {
+                throw io;
+            } else if (cause instanceof CSVException csv) {
+                throw csv;
+            } else if (cause instanceof RuntimeException rt) {
+                throw rt;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+
+            throw new IllegalStateException(cause);
+        }
     }
 
     /**
-     * Parses a data line.
-     * @param lineNumber The line number
-     * @param line The line's text
-     * @return A list of values
-     * @throws CSVException if the number of values doesn't match the expected
-     * number of columns.
+     * A data row.
      */
-    private List<String> parseRow(int lineNumber, String line)
-        throws CSVException
-    {
-        var scanner = new Scanner(line).useDelimiter(",");
-        var result = new ArrayList<String>();
-
-        while (scanner.hasNext()) {
-            var token = scanner.next();
-            if (token.startsWith("\"")) {
-                while (!token.endsWith("\"")) {
-                    if (!scanner.hasNext()) {
-                        throw new CSVException(lineNumber, "Unterminated double-quote");
-                    }
-                    token = token + "," + scanner.next();
+    public static class Row {
+        private final List<String> columns;
+        private final String[] values;
+        private final int lineNumber;
+
+        Row(List<String> columns, String[] values, int lineNumber) {
+            this.columns = columns;
+            this.values = values;
+            this.lineNumber = lineNumber;
+        }
+
+        /**
+         * Gets the file's column names.
+         * @return The names
+         */
+        public List<String> columns() {
+            return columns;
+        }
+
+        /**
+         * Gets the line number at which the row begins.
+         * @return The line number, 1 to N
+         */
+        public int lineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Gets the value of the given column.
+         * @param column The column number
+         * @return The value
+         */
+        public String get(int column) {
+            return values[column];
+        }
+
+        /**
+         * Gets the value of the given column.
+         * @param column The column name
+         * @return The value
+         */
+        public String get(String column) {
+            return get(indexOf(columns, column));
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Schema Binding
+
+    /**
+     * A column that a client of the reader expects to find in a file, by
+     * name.  Usually implemented by an enum of the expected columns.
+     */
+    public interface ColumnName {
+        /**
+         * Gets the column's name, as it appears in the header.
+         * @return The name
+         */
+        String columnName();
+    }
+
+    /**
+     * An enum of expected columns bound to a particular file's header.
+     * The names are resolved to indices once, at bind time, so that
+     * looking up a value is a plain array access.
+     * @param <E> The enum of expected columns
+     */
+    public static class Schema<E extends Enum<E> & ColumnName> {
+        // The index of each column in the file, by enum ordinal
+        private final int[] indices;
+
+        private Schema(int[] indices) {
+            this.indices = indices;
+        }
+
+        /**
+         * Binds the expected columns to the file's column names.
+         * @param columns The enum of expected columns
+         * @param header The file's column names
+         * @param <E> The enum of expected columns
+         * @return The schema
+         * @throws CSVException listing every expected column that is
+         * missing from the header.
+         */
+        public static <E extends Enum<E> & ColumnName> Schema<E> bind(
+            Class<E> columns,
+            List<String> header
+        ) throws CSVException {
+            var constants = columns.getEnumConstants();
+            var indices = new int[constants.length];
+            var missing = new ArrayList<String>();
+
+            for (var column : constants) {
+                var index = header.indexOf(column.columnName());
+
+                if (index == -1) {
+                    missing.add("\"" + column.columnName() + "\"");
                 }
 
-                token = token.replace('"', ' ').trim();
+                indices[column.ordinal()] = index;
             }
 
-            result.add(token);
-        }
+            if (!missing.isEmpty()) {
+                throw new CSVException(1,
+                    "Missing columns: " + String.join(", ", missing));
+            }
 
-        // hasNext() is false at the last column, if the value is empty.
-        if (result.size() == columns.size() - 1) {
-            result.add("");
+            return new Schema<>(indices);
         }
 
-        if (result.size() != columns.size()) {
-            throw new CSVException(lineNumber,
-                "Expected " + columns.size() +
-                " columns, found: " + result.size());
+        /**
+         * Gets the index of the column in the file.
+         * @param column The column
+         * @return The index
+         */
+        public int index(E column) {
+            return indices[column.ordinal()];
         }
 
-        return result;
+        /**
+         * Gets the value of the column in the given row.
+         * @param row The row
+         * @param column The column
+         * @return The value
+         */
+        public String get(Row row, E column) {
+            return row.get(indices[column.ordinal()]);
+        }
     }
 
     //-------------------------------------------------------------------------
@@ -140,7 +373,7 @@ public class CSVReader {
      * @return The value
      */
     public String get(int row, int column) {
-        return rows.get(row).get(column);
+        return rows.get(row)[column];
     }
 
     /**
@@ -150,6 +383,13 @@ public class CSVReader {
      * @return The value
      */
     public String get(int row, String column) {
+        return get(row, indexOf(columns, column));
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private static int indexOf(List<String> columns, String column) {
         var ndx = columns.indexOf(column);
 
         if (ndx == -1) {
@@ -157,12 +397,370 @@ public class CSVReader {
                 "Invalid column name: \"" + column + "\"");
         }
 
-        return get(row, ndx);
+        return ndx;
     }
 
+    /**
+     * A byte range of a file, beginning at a record boundary.
+     * @param start The offset of the first byte
+     * @param end The offset just past the last byte
+     * @param lineNumber The line number at the start
+     */
+    private record Chunk(long start, long end, int lineNumber) { }
 
-    //-------------------------------------------------------------------------
-    // Helpers
+    /**
+     * Splits a file into chunks of about equal size that begin at record
+     * boundaries.  It scans the bytes with the parser's quoting rules;
+     * the quote, comma, and line feed characters are single bytes in
+     * UTF-8 and never occur inside multi-byte characters.
+     */
+    private static class Chunker {
+        // Scan states
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private long position = 0;
+        private int state = FIELD_START;
+        private int lineNumber = 1;
+        private boolean blank;
+
+        Chunker(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            bytes.flip();
+        }
+
+        // Splits the data rows into at most the given number of chunks.
+        // The first chunk begins just after the header.
+        List<Chunk> split(int count) throws IOException {
+            var result = new ArrayList<Chunk>();
+
+            // The parser skips any byte order mark, and blank lines before
+            // the header.
+            skipByteOrderMark();
+            var start = nextRecord();
+
+            while (blank && position < size) {
+                start = nextRecord();
+            }
+
+            var startLine = lineNumber;
+            var step = Math.max(1, (size - start) / Math.max(1, count));
+
+            for (int i = 1; i < count; i++) {
+                var target = start + step;
+
+                while (position < target && position < size) {
+                    nextRecord();
+                }
+
+                if (position >= size) {
+                    break;
+                }
+
+                result.add(new Chunk(start, position, startLine));
+                start = position;
+                startLine = lineNumber;
+            }
+
+            result.add(new Chunk(start, size, startLine));
+            return result;
+        }
+
+        private void skipByteOrderMark() throws IOException {
+            var bom = ByteBuffer.allocate(3);
+            channel.read(bom, 0);
+
+            if (bom.position() == 3 && (bom.get(0) & 0xFF) == 0xEF &&
+                (bom.get(1) & 0xFF) == 0xBB && (bom.get(2) & 0xFF) == 0xBF)
+            {
+                position = 3;
+            }
+        }
+
+        // Scans past the end of the current record, returning the offset
+        // of the next.
+        private long nextRecord() throws IOException {
+            blank = true;
+
+            while (position < size) {
+                if (!bytes.hasRemaining()) {
+                    bytes.clear();
+                    channel.read(bytes, position);
+                    bytes.flip();
+                }
+
+                var b = bytes.get();
+                position++;
+
+                if (b == '\n') {
+                    lineNumber++;
+                } else if (b != '\r') {
+                    blank = false;
+                }
+
+                switch (state) {
+                    case FIELD_START, UNQUOTED -> {
+                        if (b == '\n') {
+                            state = FIELD_START;
+                            return position;
+                        } else if (b == ',') {
+                            state = FIELD_START;
+                        } else if (b == '"' && state == FIELD_START) {
+                            state = QUOTED;
+                        } else if (b != '\r') {
+                            state = UNQUOTED;
+                        }
+                    }
+                    case QUOTED -> {
+                        if (b == '"') {
+                            state = QUOTE_IN_QUOTED;
+                        }
+                    }
+                    case QUOTE_IN_QUOTED -> {
+                        if (b == '"') {
+                            state = QUOTED;
+                        } else if (b == '\n') {
+                            state = FIELD_START;
+                            return position;
+                        } else if (b == ',') {
+                            state = FIELD_START;
+                        } else {
+                            state = UNQUOTED;
+                        }
+                    }
+                }
+            }
+
+            return position;
+        }
+    }
+
+    /**
+     * An RFC 4180 parser, reading characters decoded from a byte range of
+     * a file channel.
+     */
+    private static class Parser {
+        private static final int EOF = -1;
+
+        // The input
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+        private final ByteBuffer bytes;
+        private final CharBuffer chars;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private boolean endOfInput = false;
+        private boolean decoded = false;
+
+        // The output
+        private final RowHandler handler;
+        private List<String> columns;
+
+        // The parse state
+        private int lineNumber;
+        private final StringBuilder field = new StringBuilder();
+        private final List<String> values = new ArrayList<>();
+
+        // Parses the bytes from start to end, which begin at the given
+        // line.  If the columns are null, the first record is the header.
+        Parser(
+            FileChannel channel,
+            long start,
+            long end,
+            int lineNumber,
+            List<String> columns,
+            RowHandler handler
+        ) {
+            var capacity = (int)Math.max(1024, Math.min(BUFFER_SIZE, end - start));
+
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            this.bytes = ByteBuffer.allocateDirect(capacity);
+            this.chars = CharBuffer.allocate(capacity);
+            this.lineNumber = lineNumber;
+            this.columns = columns;
+            this.handler = handler;
+            chars.flip();
+        }
+
+        void parse() throws IOException, CSVException {
+            if (columns == null) {
+                // FIRST, skip any byte order mark.
+                if (peek() == '\uFEFF') {
+                    chars.get();
+                }
+
+                if (peek() == EOF) {
+                    throw new CSVException(1, "Input file is empty.");
+                }
+            }
+
+            // NEXT, parse the records.
+            while (peek() != EOF) {
+                var recordLine = lineNumber;
+
+                if (parseRecord()) {
+                    emit(recordLine);
+                }
+            }
+        }
+
+        // Parses one record into values, consuming its line break.
+        // Returns false if the record is a blank line.
+        private boolean parseRecord() throws IOException, CSVException {
+            values.clear();
+            field.setLength(0);
+
+            var startLine = lineNumber;
+            var blank = true;
+
+            while (true) {
+                var ch = next();
+
+                if (ch == EOF || ch == '\n') {
+                    if (ch == '\n') {
+                        lineNumber++;
+                    }
+                    values.add(field.toString());
+                    return !blank;
+                }
+
+                if (ch == '\r') {
+                    // A CRLF blank line is as blank as an LF one.
+                    continue;
+                }
+
+                blank = false;
+
+                if (ch == ',') {
+                    values.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '"' && field.length() == 0) {
+                    parseQuoted(startLine);
+                } else {
+                    field.append((char)ch);
+                }
+            }
+        }
+
+        // Parses the rest of a quoted value into the field, up to the
+        // closing quote.
+        private void parseQuoted(int startLine) throws IOException, CSVException {
+            while (true) {
+                var ch = next();
+
+                if (ch == EOF) {
+                    throw new CSVException(startLine, "Unterminated double-quote");
+                } else if (ch == '"') {
+                    if (peek() != '"') {
+                        break;
+                    }
+                    field.append((char)next());
+                } else {
+                    if (ch == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char)ch);
+                }
+            }
+
+            // The closing quote must end the value.
+            var ch = peek();
+
+            if (ch != ',' && ch != '\n' && ch != '\r' && ch != EOF) {
+                throw new CSVException(lineNumber,
+                    "Expected a comma after a double-quoted value");
+            }
+        }
+
+        // Passes the parsed record to the handler, or saves it as the
+        // column names if it's the first.
+        private void emit(int recordLine) throws CSVException {
+            if (columns == null) {
+                columns = List.copyOf(values);
+                handler.header(columns);
+                return;
+            }
+
+            if (values.size() != columns.size()) {
+                throw new CSVException(recordLine,
+                    "Expected " + columns.size() +
+                    " columns, found: " + values.size());
+            }
+
+            handler.handle(new Row(columns,
+                values.toArray(new String[0]), recordLine));
+        }
+
+        private int peek() throws IOException {
+            if (!chars.hasRemaining() && !fill()) {
+                return EOF;
+            }
+
+            return chars.get(chars.position());
+        }
+
+        private int next() throws IOException {
+            if (!chars.hasRemaining() && !fill()) {
+                return EOF;
+            }
+
+            return chars.get();
+        }
+
+        // Decodes more characters into the buffer.  Returns false at the
+        // end of the input.
+        private boolean fill() throws IOException {
+            chars.clear();
+
+            while (chars.position() == 0 && !decoded) {
+                if (!endOfInput && read() < 0) {
+                    endOfInput = true;
+                }
+
+                bytes.flip();
+                var result = decoder.decode(bytes, chars, endOfInput);
+                bytes.compact();
+
+                if (endOfInput && result.isUnderflow()) {
+                    decoder.flush(chars);
+                    decoded = true;
+                }
+            }
+
+            chars.flip();
+            return chars.hasRemaining();
+        }
+
+        // Reads more of the byte range.  Returns the number of bytes read,
+        // or -1 at the end of the range.
+        private int read() throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+
+            var limit = bytes.limit();
+            bytes.limit((int)Math.min(limit, bytes.position() + end - position));
+            var count = channel.read(bytes, position);
+            bytes.limit(limit);
+
+            if (count > 0) {
+                position += count;
+            }
+
+            return count;
+        }
+    }
 
     /**
      * The class for records in the file.
@@ -0,0 +1,324 @@
+package armory.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A columnar, in-memory copy of a CSV file, restricted to the columns of
+ * a schema.  Each column is stored according to its {@link Encoding}:
+ * columns with few distinct values are dictionary encoded, numeric
+ * columns are parsed once into ints, and the rest are kept as strings.
+ * Columns outside the schema are discarded as the file is read.
+ *
+ * <p>Filters on dictionary-encoded columns are cheap: the predicate is
+ * evaluated once per distinct value, and the rows are selected by a scan
+ * over an int array.</p>
+ *
+ * @param <E> The enum of columns
+ */
+public class ColumnStore<E extends Enum<E> & CSVReader.ColumnName> {
+    //-------------------------------------------------------------------------
+    // Types
+
+    /**
+     * How a column's values are stored.
+     */
+    public enum Encoding {
+        /** One string per row. */
+        TEXT,
+
+        /** One int code per row, indexing a table of distinct strings. */
+        DICTIONARY,
+
+        /** One int per row, parsed when the file is read. */
+        INTEGER
+    }
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The columns, by ordinal
+    private final E[] columns;
+
+    // The encoding of each column, by ordinal
+    private final Encoding[] encodings;
+
+    // The values of each TEXT column, by ordinal; null for other columns.
+    private final String[][] text;
+
+    // The values of each INTEGER column, or the codes of each DICTIONARY
+    // column, by ordinal; null for TEXT columns.
+    private final int[][] ints;
+
+    // The distinct values of each DICTIONARY column, by ordinal; null for
+    // other columns.
+    private final Dictionary[] dictionaries;
+
+    // The line number of each row in the file
+    private int[] lineNumbers = new int[16];
+
+    // The number of rows
+    private int size = 0;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    private ColumnStore(Class<E> columnClass, Function<E,Encoding> encoding) {
+        this.columns = columnClass.getEnumConstants();
+        this.encodings = new Encoding[columns.length];
+        this.text = new String[columns.length][];
+        this.ints = new int[columns.length][];
+        this.dictionaries = new Dictionary[columns.length];
+
+        for (var column : columns) {
+            var i = column.ordinal();
+            encodings[i] = encoding.apply(column);
+
+            switch (encodings[i]) {
+                case TEXT -> text[i] = new String[lineNumbers.length];
+                case DICTIONARY -> {
+                    ints[i] = new int[lineNumbers.length];
+                    dictionaries[i] = new Dictionary();
+                }
+                case INTEGER -> ints[i] = new int[lineNumbers.length];
+            }
+        }
+    }
+
+    /**
+     * Reads the CSV file into a new store.
+     * @param csvFile The file
+     * @param columnClass The enum of columns to keep
+     * @param encoding The encoding of each column
+     * @param <E> The enum of columns
+     * @return The store
+     * @throws IOException If the file could not be read from disk
+     * @throws CSVReader.CSVException If the file could not be parsed, is
+     * missing any of the columns, or has a non-integer in an INTEGER column.
+     */
+    public static <E extends Enum<E> & CSVReader.ColumnName> ColumnStore<E>
+    load(File csvFile, Class<E> columnClass, Function<E,Encoding> encoding)
+        throws IOException, CSVReader.CSVException
+    {
+        var store = new ColumnStore<>(columnClass, encoding);
+
+        CSVReader.read(csvFile, new CSVReader.RowHandler() {
+            private CSVReader.Schema<E> schema;
+
+            @Override
+            public void header(List<String> header)
+                throws CSVReader.CSVException
+            {
+                schema = CSVReader.Schema.bind(columnClass, header);
+            }
+
+            @Override
+            public void handle(CSVReader.Row row)
+                throws CSVReader.CSVException
+            {
+                store.append(schema, row);
+            }
+        });
+
+        return store;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public Methods
+
+    /**
+     * Gets the number of rows.
+     * @return The number
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the line number in the file at which the row began.
+     * @param row The row
+     * @return The line number
+     */
+    public int lineNumber(int row) {
+        return lineNumbers[row];
+    }
+
+    /**
+     * Gets the encoding of the column.
+     * @param column The column
+     * @return The encoding
+     */
+    public Encoding encoding(E column) {
+        return encodings[column.ordinal()];
+    }
+
+    /**
+     * Gets the value of the column in the row as a string, whatever its
+     * encoding.
+     * @param row The row
+     * @param column The column
+     * @return The value
+     */
+    public String get(int row, E column) {
+        var i = column.ordinal();
+
+        return switch (encodings[i]) {
+            case TEXT -> text[i][row];
+            case DICTIONARY -> dictionaries[i].values.get(ints[i][row]);
+            case INTEGER -> Integer.toString(ints[i][row]);
+        };
+    }
+
+    /**
+     * Gets the value of an INTEGER column in the row.
+     * @param row The row
+     * @param column The column
+     * @return The value
+     * @throws IllegalArgumentException if the column is not INTEGER.
+     */
+    public int getInt(int row, E column) {
+        requireEncoding(column, Encoding.INTEGER);
+        return ints[column.ordinal()][row];
+    }
+
+    /**
+     * Gets the distinct values of a DICTIONARY column, indexed by code.
+     * @param column The column
+     * @return The values
+     * @throws IllegalArgumentException if the column is not DICTIONARY.
+     */
+    public List<String> dictionary(E column) {
+        requireEncoding(column, Encoding.DICTIONARY);
+        return List.copyOf(dictionaries[column.ordinal()].values);
+    }
+
+    /**
+     * Selects the rows whose value in the column passes the test.  For a
+     * DICTIONARY column the test is applied once per distinct value.
+     * @param column The column
+     * @param test The test
+     * @return The selected rows
+     */
+    public BitSet select(E column, Predicate<String> test) {
+        var i = column.ordinal();
+        var result = new BitSet(size);
+
+        if (encodings[i] == Encoding.DICTIONARY) {
+            var values = dictionaries[i].values;
+            var passes = new boolean[values.size()];
+
+            for (int code = 0; code < passes.length; code++) {
+                passes[code] = test.test(values.get(code));
+            }
+
+            var codes = ints[i];
+
+            for (int row = 0; row < size; row++) {
+                if (passes[codes[row]]) {
+                    result.set(row);
+                }
+            }
+        } else {
+            for (int row = 0; row < size; row++) {
+                if (test.test(get(row, column))) {
+                    result.set(row);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Appends the schema's columns of the row.
+    private void append(CSVReader.Schema<E> schema, CSVReader.Row row)
+        throws CSVReader.CSVException
+    {
+        if (size == lineNumbers.length) {
+            grow();
+        }
+
+        for (var column : columns) {
+            var i = column.ordinal();
+            var value = schema.get(row, column);
+
+            switch (encodings[i]) {
+                case TEXT -> text[i][size] = value;
+                case DICTIONARY -> ints[i][size] = dictionaries[i].code(value);
+                case INTEGER -> ints[i][size] =
+                    parseInt(row.lineNumber(), column, value);
+            }
+        }
+
+        lineNumbers[size++] = row.lineNumber();
+    }
+
+    // Doubles the capacity of every column.
+    private void grow() {
+        var capacity = 2 * lineNumbers.length;
+        lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+
+        for (int i = 0; i < columns.length; i++) {
+            if (text[i] != null) {
+                text[i] = Arrays.copyOf(text[i], capacity);
+            }
+
+            if (ints[i] != null) {
+                ints[i] = Arrays.copyOf(ints[i], capacity);
+            }
+        }
+    }
+
+    private int parseInt(int lineNumber, E column, String value)
+        throws CSVReader.CSVException
+    {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new CSVReader.CSVException(lineNumber,
+                "Expected an integer in column \"" + column.columnName() +
+                "\", found: \"" + value + "\"");
+        }
+    }
+
+    private void requireEncoding(E column, Encoding encoding) {
+        if (encodings[column.ordinal()] != encoding) {
+            throw new IllegalArgumentException("Column \"" +
+                column.columnName() + "\" is not " + encoding);
+        }
+    }
+
+    /**
+     * The distinct values of a dictionary-encoded column.
+     */
+    private static class Dictionary {
+        // The code of each value
+        private final Map<String,Integer> codes = new HashMap<>();
+
+        // The values, by code
+        private final List<String> values = new ArrayList<>();
+
+        // Gets the value's code, adding it if need be.
+        int code(String value) {
+            var code = codes.get(value);
+
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+
+            return code;
+        }
+    }
+}
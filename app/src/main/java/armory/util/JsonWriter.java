@@ -0,0 +1,169 @@
+package armory.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A minimal streaming JSON writer.  Objects and arrays are opened and
+ * closed explicitly; commas are inserted as needed.
+ *
+ * <pre>
+ * var json = new JsonWriter();
+ * json.beginObject().name("count").value(3).endObject();
+ * json.toString();   // {"count":3}
+ * </pre>
+ */
+public class JsonWriter {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The output
+    private final StringBuilder out = new StringBuilder();
+
+    // For each open object or array, whether it has no members yet
+    private final Deque<Boolean> empty = new ArrayDeque<>();
+
+    // Whether the next value follows a member name
+    private boolean afterName = false;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    public JsonWriter() {
+        // Nothing to do
+    }
+
+    //-------------------------------------------------------------------------
+    // Public API
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        out.append('{');
+        empty.push(true);
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        empty.pop();
+        out.append('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        out.append('[');
+        empty.push(true);
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        empty.pop();
+        out.append(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     * @param name The name
+     * @return The writer
+     */
+    public JsonWriter name(String name) {
+        beforeValue();
+        string(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * Writes a number; NaN and the infinities, which JSON cannot
+     * represent, are written as null.
+     * @param value The value
+     * @return The writer
+     */
+    public JsonWriter value(double value) {
+        if (!Double.isFinite(value)) {
+            return nullValue();
+        }
+
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        out.append("null");
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Writes a comma if the value is not the first in its container.
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+
+        if (!empty.isEmpty()) {
+            if (!empty.pop()) {
+                out.append(',');
+            }
+            empty.push(false);
+        }
+    }
+
+    private void string(String value) {
+        out.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            var ch = value.charAt(i);
+
+            switch (ch) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        out.append(String.format("\\u%04x", (int)ch));
+                    } else {
+                        out.append(ch);
+                    }
+                }
+            }
+        }
+
+        out.append('"');
+    }
+}
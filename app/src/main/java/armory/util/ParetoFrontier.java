@@ -0,0 +1,282 @@
+package armory.util;
+
+import java.util.Arrays;
+
+/**
+ * The Pareto frontier of the items offered to it: the items that no other
+ * item strictly dominates, being at least as large in every dimension and
+ * larger in some.  Items with identical values are all retained.  Items
+ * are identified by long keys, and their values are non-negative ints.
+ *
+ * <p>For each dimension d and value v, the frontier keeps a bitmap of the
+ * members whose value in d is at least v.  The members that dominate an
+ * item are then the AND of one bitmap per dimension, and the members it
+ * dominates are the AND of their complements; so each check costs a few
+ * words per 64 members, rather than a comparison with every member.</p>
+ */
+public class ParetoFrontier {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The number of dimensions
+    private final int dims;
+
+    // The members, by slot: the key, and the values at slot * dims.  A
+    // slot is in use if its bit is set in live.
+    private long[] keys;
+    private int[] values;
+    private long[] live;
+
+    // The free slots below high, as a stack, and the number of slots ever
+    // used.
+    private int[] free;
+    private int freeCount = 0;
+    private int high = 0;
+
+    // The bitmaps: atLeast[d][v] has the bit set for each member whose
+    // value in dimension d is at least v.
+    private long[][][] atLeast;
+
+    // The number of members, and the number evicted
+    private int size = 0;
+    private long evictions = 0;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty frontier.
+     * @param dims The number of dimensions
+     */
+    public ParetoFrontier(int dims) {
+        this.dims = dims;
+        this.keys = new long[64];
+        this.values = new int[64 * dims];
+        this.live = new long[1];
+        this.free = new int[64];
+        this.atLeast = new long[dims][0][];
+    }
+
+    //-------------------------------------------------------------------------
+    // Public Methods
+
+    /**
+     * Gets whether a member strictly dominates the values.
+     * @param item The values, one per dimension
+     * @return true or false
+     */
+    public boolean isDominated(int[] item) {
+        for (int d = 0; d < dims; d++) {
+            if (item[d] >= atLeast[d].length) {
+                return false;
+            }
+        }
+
+        var words = (high + Long.SIZE - 1) / Long.SIZE;
+
+        for (int w = 0; w < words; w++) {
+            var word = live[w];
+
+            for (int d = 0; d < dims && word != 0; d++) {
+                word &= atLeast[d][item[d]][w];
+            }
+
+            while (word != 0) {
+                var slot = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+
+                if (!isEqual(slot, item)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Offers an item, adding it if no member strictly dominates it, and
+     * evicting the members that it strictly dominates.
+     * @param key The item's key
+     * @param item The item's values, one per dimension, which are copied
+     * @return true if the item was added, and false otherwise.
+     * @throws IllegalArgumentException if a value is negative.
+     */
+    public boolean offer(long key, int[] item) {
+        for (int d = 0; d < dims; d++) {
+            if (item[d] < 0) {
+                throw new IllegalArgumentException(
+                    "Negative value: " + item[d]);
+            }
+        }
+
+        if (isDominated(item)) {
+            return false;
+        }
+
+        evict(item);
+        add(key, item);
+
+        return true;
+    }
+
+    /**
+     * Gets the number of members.
+     * @return The number
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of members evicted by items that dominate them.
+     * @return The number
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the keys of the members, lowest first.
+     * @return The keys
+     */
+    public long[] keys() {
+        var result = new long[size];
+        var n = 0;
+
+        for (int slot = 0; slot < high; slot++) {
+            if (isLive(slot)) {
+                result[n++] = keys[slot];
+            }
+        }
+
+        Arrays.sort(result);
+
+        return result;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Removes the members that the item strictly dominates.
+    private void evict(int[] item) {
+        var words = (high + Long.SIZE - 1) / Long.SIZE;
+
+        for (int w = 0; w < words; w++) {
+            var word = live[w];
+
+            for (int d = 0; d < dims && word != 0; d++) {
+                var above = item[d] + 1;
+
+                if (above < atLeast[d].length) {
+                    word &= ~atLeast[d][above][w];
+                }
+            }
+
+            while (word != 0) {
+                var slot = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+
+                if (!isEqual(slot, item)) {
+                    remove(slot);
+                    evictions++;
+                }
+            }
+        }
+    }
+
+    private void add(long key, int[] item) {
+        int slot;
+
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (high == keys.length) {
+                grow();
+            }
+
+            slot = high++;
+        }
+
+        keys[slot] = key;
+        System.arraycopy(item, 0, values, slot * dims, dims);
+        live[slot / Long.SIZE] |= bit(slot);
+
+        for (int d = 0; d < dims; d++) {
+            if (item[d] >= atLeast[d].length) {
+                extend(d, item[d]);
+            }
+
+            for (int v = 0; v <= item[d]; v++) {
+                atLeast[d][v][slot / Long.SIZE] |= bit(slot);
+            }
+        }
+
+        size++;
+    }
+
+    private void remove(int slot) {
+        live[slot / Long.SIZE] &= ~bit(slot);
+
+        for (int d = 0; d < dims; d++) {
+            var value = values[slot * dims + d];
+
+            for (int v = 0; v <= value; v++) {
+                atLeast[d][v][slot / Long.SIZE] &= ~bit(slot);
+            }
+        }
+
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, 2 * free.length);
+        }
+
+        free[freeCount++] = slot;
+        size--;
+    }
+
+    private boolean isLive(int slot) {
+        return (live[slot / Long.SIZE] & bit(slot)) != 0;
+    }
+
+    private boolean isEqual(int slot, int[] item) {
+        var base = slot * dims;
+
+        for (int d = 0; d < dims; d++) {
+            if (values[base + d] != item[d]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long bit(int slot) {
+        return 1L << (slot % Long.SIZE);
+    }
+
+    // Adds bitmaps for dimension d up to the given value.
+    private void extend(int d, int value) {
+        var old = atLeast[d].length;
+        atLeast[d] = Arrays.copyOf(atLeast[d], value + 1);
+
+        for (int v = old; v <= value; v++) {
+            atLeast[d][v] = new long[live.length];
+        }
+    }
+
+    // Doubles the number of slots.
+    private void grow() {
+        var capacity = 2 * keys.length;
+        var words = capacity / Long.SIZE;
+
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity * dims);
+        live = Arrays.copyOf(live, words);
+
+        for (var bitmaps : atLeast) {
+            for (int v = 0; v < bitmaps.length; v++) {
+                bitmaps[v] = Arrays.copyOf(bitmaps[v], words);
+            }
+        }
+    }
+}
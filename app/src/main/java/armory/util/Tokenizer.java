@@ -0,0 +1,295 @@
+package armory.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single-pass tokenizer for line-oriented text files such as armory
+ * files.  Each line is a sequence of whitespace-delimited words, numbers,
+ * and double-quoted strings.  Blank lines and lines beginning with "#" are
+ * skipped.  The file is read through a fixed-size buffer, one character at
+ * a time, without regular expressions or per-line strings.
+ */
+public class Tokenizer implements Closeable {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    private static final int EOF = -1;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The input
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int pos = 0;
+    private int limit = 0;
+
+    // The number of the current line, 1 to N
+    private int lineNumber = 0;
+
+    // Whether the current line has been started but not finished
+    private boolean inLine = false;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Opens the file for tokenizing.
+     * @param file The file
+     * @throws IOException if the file cannot be opened.
+     */
+    public Tokenizer(File file) throws IOException {
+        this(new InputStreamReader(new FileInputStream(file),
+            StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tokenizes the text from the reader.
+     * @param reader The reader
+     */
+    public Tokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    //-------------------------------------------------------------------------
+    // Public Methods
+
+    /**
+     * Advances to the beginning of the next line that is neither blank nor
+     * a comment, skipping the rest of the current line.
+     * @return true if there is such a line, and false at the end of input.
+     * @throws IOException on read error
+     */
+    public boolean nextLine() throws IOException {
+        if (inLine) {
+            skipRestOfLine();
+        }
+
+        while (true) {
+            skipSpaces();
+            var ch = peek();
+
+            if (ch == EOF) {
+                return false;
+            }
+
+            // Count the line only once it's known to exist.
+            ++lineNumber;
+
+            if (ch == '\n') {
+                pos++;
+            } else if (ch == '#') {
+                skipRestOfLine();
+            } else {
+                inLine = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the line number of the current line (1 to N)
+     * @return the number
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets whether there are no more tokens on the current line.
+     * @return true or false
+     * @throws IOException on read error
+     */
+    public boolean atEndOfLine() throws IOException {
+        skipSpaces();
+        var ch = peek();
+        return ch == '\n' || ch == EOF;
+    }
+
+    /**
+     * Reads the next whitespace-delimited word on the current line.
+     * @return The word
+     * @throws IOException on read error
+     * @throws TokenException if there are no more tokens on the line.
+     */
+    public String word() throws IOException, TokenException {
+        if (atEndOfLine()) {
+            throw error("unexpected end of line");
+        }
+
+        var text = new StringBuilder();
+
+        while (!isDelimiter(peek())) {
+            text.append(buffer[pos++]);
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Reads the next token on the current line as a decimal integer.
+     * @return The integer
+     * @throws IOException on read error
+     * @throws TokenException if the token is not an integer.
+     */
+    public int integer() throws IOException, TokenException {
+        if (atEndOfLine()) {
+            throw error("expected an integer, found end of line");
+        }
+
+        var negative = peek() == '-';
+
+        if (negative) {
+            pos++;
+        }
+
+        var value = 0L;
+        var digits = 0;
+
+        while (peek() >= '0' && peek() <= '9') {
+            value = 10 * value + (buffer[pos++] - '0');
+            digits++;
+
+            if (value > Integer.MAX_VALUE) {
+                throw error("integer out of range");
+            }
+        }
+
+        if (digits == 0 || !isDelimiter(peek())) {
+            throw error("expected an integer");
+        }
+
+        return (int)(negative ? -value : value);
+    }
+
+    /**
+     * Reads the next token on the current line as a decimal number.
+     * @return The number
+     * @throws IOException on read error
+     * @throws TokenException if the token is not a number.
+     */
+    public double number() throws IOException, TokenException {
+        var word = word();
+
+        try {
+            return Double.parseDouble(word);
+        } catch (NumberFormatException ex) {
+            throw error("expected a number, found: \"" + word + "\"");
+        }
+    }
+
+    /**
+     * Reads a double-quoted string on the current line, returning the text
+     * between the quotes.
+     * @return The text
+     * @throws IOException on read error
+     * @throws TokenException if there is no quoted string.
+     */
+    public String quoted() throws IOException, TokenException {
+        skipSpaces();
+
+        if (peek() != '"') {
+            throw error("expected a double-quoted name");
+        }
+        pos++;
+
+        var text = new StringBuilder();
+
+        while (peek() != '"') {
+            if (peek() == '\n' || peek() == EOF) {
+                throw error("unterminated double-quote");
+            }
+
+            text.append(buffer[pos++]);
+        }
+        pos++;
+
+        return text.toString();
+    }
+
+    /**
+     * Creates an exception for an error at the current line.
+     * @param message The error message
+     * @return The exception
+     */
+    public TokenException error(String message) {
+        return new TokenException(lineNumber, message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Gets the next character without consuming it, refilling the buffer
+    // as needed.
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            pos = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+
+        return buffer[pos];
+    }
+
+    // Skips spaces, tabs, and carriage returns on the current line.
+    private void skipSpaces() throws IOException {
+        while (true) {
+            var ch = peek();
+
+            if (ch != ' ' && ch != '\t' && ch != '\r' && ch != '\f') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    // Skips to the beginning of the next line.
+    private void skipRestOfLine() throws IOException {
+        while (true) {
+            var ch = peek();
+
+            if (ch == EOF) {
+                break;
+            }
+
+            pos++;
+
+            if (ch == '\n') {
+                break;
+            }
+        }
+
+        inLine = false;
+    }
+
+    private static boolean isDelimiter(int ch) {
+        return ch == EOF || ch == '\n' || ch == ' ' || ch == '\t'
+            || ch == '\r' || ch == '\f';
+    }
+
+    /**
+     * A syntax error in the tokenized text.
+     */
+    public static class TokenException extends Exception {
+        private final int lineNumber;
+
+        public TokenException(int lineNumber, String message) {
+            super("Line " + lineNumber + ", " + message);
+            this.lineNumber = lineNumber;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+    }
+}
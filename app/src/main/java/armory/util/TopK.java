@@ -0,0 +1,202 @@
+package armory.util;
+
+import java.util.Arrays;
+
+/**
+ * A bounded collection that retains only the K best items offered to it.
+ * Items are identified by long keys and held in primitive arrays, so that
+ * even a large K costs two arrays rather than K objects.  Items are
+ * ranked by score, highest first; items with equal scores are ranked by
+ * key, lowest first, so that when keys follow the order of enumeration
+ * the result is the same as a stable sort of every item followed by a
+ * limit.
+ */
+public class TopK {
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    // The maximum number of items to retain
+    private final int limit;
+
+    // The retained items, as a binary heap with the worst item at the
+    // root.
+    private long[] keys;
+    private double[] scores;
+    private int size = 0;
+
+    //-------------------------------------------------------------------------
+    // Constructor
+
+    /**
+     * Creates an empty collection.
+     * @param limit The maximum number of items to retain
+     */
+    public TopK(int limit) {
+        this.limit = Math.max(0, limit);
+
+        var capacity = Math.min(this.limit, 16);
+        this.keys = new long[capacity];
+        this.scores = new double[capacity];
+    }
+
+    //-------------------------------------------------------------------------
+    // Public Methods
+
+    /**
+     * Offers an item, retaining it if it is among the K best seen so far.
+     * @param key The item's key; lower wins ties.
+     * @param score The item's score; higher is better.
+     * @return true if the item was retained, and false otherwise.
+     */
+    public boolean offer(long key, double score) {
+        if (size < limit) {
+            if (size == keys.length) {
+                grow();
+            }
+
+            keys[size] = key;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+
+        if (limit > 0 && isWorse(scores[0], keys[0], score, key)) {
+            keys[0] = key;
+            scores[0] = score;
+            siftDown(0);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Offers all of the items retained by another collection.
+     * @param other The other collection
+     */
+    public void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.keys[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Gets whether the collection has retained its limit of items.
+     * @return true or false
+     */
+    public boolean isFull() {
+        return size >= limit;
+    }
+
+    /**
+     * Gets the score of the worst retained item, or negative infinity if
+     * the collection is not yet full.  An item must score at least this
+     * well to be retained.
+     * @return The score
+     */
+    public double threshold() {
+        return isFull() && size > 0 ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Gets the number of retained items.
+     * @return The number
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the keys of the retained items, best first.
+     * @return The keys
+     */
+    public long[] keys() {
+        var copy = new TopK(limit);
+        copy.keys = keys.clone();
+        copy.scores = scores.clone();
+        copy.size = size;
+
+        var result = new long[size];
+
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = copy.keys[0];
+            copy.removeRoot();
+        }
+
+        return result;
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Is item 1 worse than item 2?
+    private static boolean isWorse(
+        double score1, long key1,
+        double score2, long key2
+    ) {
+        return score1 < score2 || (score1 == score2 && key1 > key2);
+    }
+
+    private boolean isWorse(int i, int j) {
+        return isWorse(scores[i], keys[i], scores[j], keys[j]);
+    }
+
+    private void removeRoot() {
+        --size;
+        keys[0] = keys[size];
+        scores[0] = scores[size];
+        siftDown(0);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            var parent = (i - 1) >>> 1;
+
+            if (!isWorse(i, parent)) {
+                break;
+            }
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            var worst = i;
+            var left = 2 * i + 1;
+            var right = left + 1;
+
+            if (left < size && isWorse(left, worst)) {
+                worst = left;
+            }
+
+            if (right < size && isWorse(right, worst)) {
+                worst = right;
+            }
+
+            if (worst == i) {
+                return;
+            }
+
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        var key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+
+        var score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private void grow() {
+        var capacity = (int)Math.min(limit, Math.max(16L, 2L * keys.length));
+        keys = Arrays.copyOf(keys, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+}
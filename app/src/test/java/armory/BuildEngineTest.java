@@ -0,0 +1,326 @@
+package armory;
+
+import armory.types.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks each of the engine's searches against a brute-force enumeration
+ * of the suits on small generated vaults: every suit, in the nested-loop
+ * order of the pieces by type, filtered by the minimums and stably sorted
+ * by weighted sum.
+ */
+public class BuildEngineTest {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    private static final long[] SEEDS = {1, 2, 3, 4, 5};
+    private static final int[] LIMITS = {0, 1, 7, 50, 10_000};
+    private static final int[] THREADS = {1, 3};
+
+    //-------------------------------------------------------------------------
+    // Tests
+
+    @Test
+    public void countSuits() {
+        for (var seed : SEEDS) {
+            var pieces = vault(seed, 5);
+            var engine = new BuildEngine(pieces);
+
+            assertEquals(allSuits(pieces).size(), engine.countSuits());
+            assertEquals(engine.countSuits(), BuildEngine.countSuits(pieces));
+
+            var handles = new long[1];
+            engine.forEachHandle(handle -> handles[0]++);
+            assertEquals(engine.countSuits(), handles[0]);
+        }
+    }
+
+    @Test
+    public void bestMatchesBruteForce() {
+        for (var seed : SEEDS) {
+            var pieces = vault(seed, 5);
+            var engine = new BuildEngine(pieces);
+
+            for (var weights : weightSets()) {
+                for (var minStats : minStatSets()) {
+                    var expected = ranked(pieces, weights, minStats);
+
+                    for (var limit : LIMITS) {
+                        var want = keys(pieces, limit(expected, limit));
+
+                        for (var search : BuildEngine.Search.values()) {
+                            for (var threads : THREADS) {
+                                var got = engine.best(weights, minStats,
+                                    limit, search, threads);
+
+                                assertEquals(describe(seed, search, threads, limit),
+                                    want, keys(pieces, got));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bestByExoticMatchesBruteForce() {
+        for (var seed : SEEDS) {
+            var pieces = vault(seed, 5);
+            var engine = new BuildEngine(pieces);
+            var exotics = pieces.stream()
+                .filter(Armor::isExotic)
+                .sorted((a, b) -> a.type().compareTo(b.type()))
+                .toList();
+
+            for (var weights : weightSets()) {
+                for (var minStats : minStatSets()) {
+                    var expected = ranked(pieces, weights, minStats);
+
+                    for (var limit : LIMITS) {
+                        for (var search : List.of(BuildEngine.Search.EXHAUSTIVE,
+                                                  BuildEngine.Search.PRUNE)) {
+                            for (var threads : THREADS) {
+                                var groups = engine.bestByExotic(weights,
+                                    minStats, limit, search, threads);
+                                var label = describe(seed, search, threads, limit);
+
+                                assertEquals(label, exotics.size() + 1, groups.size());
+                                assertNull(label, groups.get(0).exotic());
+
+                                for (int g = 0; g < groups.size(); g++) {
+                                    var exotic = g == 0 ? null : exotics.get(g - 1);
+                                    var want = expected.stream()
+                                        .filter(suit -> exoticOf(suit) == exotic)
+                                        .toList();
+
+                                    assertSame(label, exotic, groups.get(g).exotic());
+                                    assertEquals(label,
+                                        keys(pieces, limit(want, limit)),
+                                        keys(pieces, groups.get(g).suits()));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = AppError.class)
+    public void bestByExoticRejectsPairs() {
+        new BuildEngine(vault(1, 3)).bestByExotic(new StatWeights(),
+            new StatMap(), 5, BuildEngine.Search.PAIRS, 1);
+    }
+
+    @Test
+    public void bestForEachMatchesBruteForce() {
+        for (var seed : SEEDS) {
+            // Two vaults, and a profile that shares some of each.
+            var first = vault(seed, 4);
+            var second = vault(seed + 100, 4);
+            var mixed = new ArrayList<Armor>();
+
+            for (int i = 0; i < first.size(); i++) {
+                mixed.add(i % 2 == 0 ? first.get(i) : second.get(i));
+            }
+
+            var weights = weightSets();
+            var minStats = minStatSets();
+            var profiles = new ArrayList<BuildEngine.Profile>();
+            var pieceLists = List.of(first, second, mixed, first);
+
+            for (int q = 0; q < pieceLists.size(); q++) {
+                profiles.add(new BuildEngine.Profile(pieceLists.get(q),
+                    weights.get(q % weights.size()),
+                    minStats.get(q % minStats.size()),
+                    LIMITS[q % LIMITS.length]));
+            }
+
+            var results = BuildEngine.bestForEach(profiles);
+
+            assertEquals(profiles.size(), results.size());
+
+            for (int q = 0; q < profiles.size(); q++) {
+                var profile = profiles.get(q);
+                var want = limit(ranked(profile.pieces(), profile.weights(),
+                    profile.minStats()), profile.limit());
+
+                assertEquals("seed " + seed + ", profile " + q,
+                    keys(profile.pieces(), want),
+                    keys(profile.pieces(), results.get(q)));
+            }
+        }
+    }
+
+    @Test
+    public void paretoMatchesBruteForce() {
+        for (var seed : SEEDS) {
+            var pieces = vault(seed, 5);
+            var engine = new BuildEngine(pieces);
+
+            for (var weights : weightSets()) {
+                for (var minStats : minStatSets()) {
+                    var feasible = ranked(pieces, weights, minStats);
+                    var want = feasible.stream()
+                        .filter(suit -> feasible.stream().noneMatch(other ->
+                            other.dominates(suit) && !suit.dominates(other)))
+                        .toList();
+                    var got = engine.pareto(weights, minStats, Profiler.NONE);
+
+                    assertEquals("seed " + seed,
+                        keys(pieces, want), keys(pieces, got));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void noFeasibleSuit() {
+        var pieces = vault(1, 4);
+        var engine = new BuildEngine(pieces);
+        var minStats = new StatMap();
+
+        Stat.forEach(stat -> minStats.put(stat, 1000));
+
+        for (var search : BuildEngine.Search.values()) {
+            assertTrue(engine.best(new StatWeights(), minStats, 5, search, 2)
+                .isEmpty());
+        }
+
+        engine.bestByExotic(new StatWeights(), minStats, 5,
+                BuildEngine.Search.PRUNE, 2)
+            .forEach(group -> assertTrue(group.suits().isEmpty()));
+        assertTrue(engine.pareto(new StatWeights(), minStats, Profiler.NONE)
+            .isEmpty());
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Generates a vault with the given number of pieces of each type.
+    private static List<Armor> vault(long seed, int count) {
+        var counts = new EnumMap<Type,Integer>(Type.class);
+        Type.forEach(type -> counts.put(type, count));
+
+        return new VaultGenerator(seed)
+            .generate(counts, 0.4, CharacterClass.WARLOCK, 0)
+            .pieces();
+    }
+
+    // Equal weights, and fractional weights that produce near-ties.
+    private static List<StatWeights> weightSets() {
+        var fractional = new StatWeights();
+        fractional.put(Stat.MOB, 0.3);
+        fractional.put(Stat.RES, 0.7);
+        fractional.put(Stat.INT, 0.1);
+
+        var zeroes = new StatWeights();
+        Stat.forEach(stat -> zeroes.put(stat, 0.0));
+        zeroes.put(Stat.DIS, 2.0);
+
+        return List.of(new StatWeights(), fractional, zeroes);
+    }
+
+    // No minimums, and minimums that some suits meet.
+    private static List<StatMap> minStatSets() {
+        var some = new StatMap();
+        some.put(Stat.MOB, 35);
+        some.put(Stat.RES, 30);
+
+        return List.of(new StatMap(), some);
+    }
+
+    // Every legal suit, in the nested-loop order of the pieces by type.
+    private static List<Suit> allSuits(List<Armor> pieces) {
+        var typeLists = Armory.getTypeLists(pieces);
+        var result = new ArrayList<Suit>();
+
+        for (var head : typeLists.get(Type.HEAD)) {
+            for (var arms : typeLists.get(Type.ARMS)) {
+                for (var body : typeLists.get(Type.BODY)) {
+                    for (var legs : typeLists.get(Type.LEGS)) {
+                        var suit = new Suit(head, arms, body, legs);
+
+                        if (suit.values().stream().filter(Armor::isExotic).count() <= 1) {
+                            result.add(suit);
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    // The acceptable suits, best first.
+    private static List<Suit> ranked(
+        List<Armor> pieces,
+        StatWeights weights,
+        StatMap minStats
+    ) {
+        var result = new ArrayList<>(allSuits(pieces).stream()
+            .filter(suit -> Stat.stream()
+                .allMatch(stat -> suit.stat(stat) >= minStats.get(stat)))
+            .toList());
+
+        result.sort(new SuitComparator(weights).reversed());
+
+        return result;
+    }
+
+    private static List<Suit> limit(List<Suit> suits, int limit) {
+        return suits.subList(0, Math.min(limit, suits.size()));
+    }
+
+    private static Armor exoticOf(Suit suit) {
+        return suit.values().stream()
+            .filter(Armor::isExotic)
+            .findFirst()
+            .orElse(null);
+    }
+
+    // Identifies each suit by the positions of its pieces in the list,
+    // as two pieces may be alike.
+    private static List<String> keys(List<Armor> pieces, List<Suit> suits) {
+        var index = new IdentityHashMap<Armor,Integer>();
+
+        for (int i = 0; i < pieces.size(); i++) {
+            index.put(pieces.get(i), i);
+        }
+
+        var result = new ArrayList<String>();
+
+        for (var suit : suits) {
+            var key = new StringBuilder();
+
+            for (var type : Type.values()) {
+                var position = index.get(suit.get(type));
+                assertNotNull("suit uses a piece not in the list", position);
+                key.append(position).append(' ');
+            }
+
+            result.add(key.toString().trim());
+        }
+
+        return result;
+    }
+
+    private static String describe(
+        long seed,
+        BuildEngine.Search search,
+        int threads,
+        int limit
+    ) {
+        return "seed " + seed + ", " + search + ", " + threads +
+            " threads, limit " + limit;
+    }
+}
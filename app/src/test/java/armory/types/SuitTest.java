@@ -0,0 +1,111 @@
+package armory.types;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a suit's cached totals follow every way of changing its
+ * pieces, and that its views cannot change them.
+ */
+public class SuitTest {
+    @Test
+    public void totalsFollowEveryMutator() {
+        var suit = suit(1);
+        var other = piece(Type.HEAD, 10);
+
+        assertEquals(4, suit.stat(Stat.MOB));
+
+        suit.put(Type.HEAD, other);
+        assertEquals(13, suit.stat(Stat.MOB));
+
+        suit.replace(Type.HEAD, piece(Type.HEAD, 2));
+        assertEquals(5, suit.stat(Stat.MOB));
+
+        suit.compute(Type.ARMS, (type, armor) -> piece(type, 5));
+        assertEquals(9, suit.stat(Stat.MOB));
+
+        suit.merge(Type.BODY, piece(Type.BODY, 7), (a, b) -> b);
+        assertEquals(15, suit.stat(Stat.MOB));
+
+        suit.replaceAll((type, armor) -> piece(type, 3));
+        assertEquals(12, suit.stat(Stat.MOB));
+
+        suit.remove(Type.LEGS);
+        assertEquals(9, suit.stat(Stat.MOB));
+
+        suit.putIfAbsent(Type.LEGS, piece(Type.LEGS, 1));
+        assertEquals(10, suit.stat(Stat.MOB));
+
+        suit.replace(Type.LEGS, suit.get(Type.LEGS), piece(Type.LEGS, 4));
+        assertEquals(13, suit.stat(Stat.MOB));
+
+        suit.computeIfPresent(Type.LEGS, (type, armor) -> piece(type, 6));
+        assertEquals(15, suit.stat(Stat.MOB));
+
+        suit.remove(Type.LEGS, suit.get(Type.LEGS));
+        suit.computeIfAbsent(Type.LEGS, type -> piece(type, 8));
+        assertEquals(17, suit.stat(Stat.MOB));
+
+        suit.putAll(suit(0));
+        assertEquals(0, suit.stat(Stat.MOB));
+
+        suit.clear();
+        assertEquals(0, suit.total());
+    }
+
+    @Test
+    public void viewsAreReadOnly() {
+        var suit = suit(1);
+        var legs = suit.get(Type.LEGS);
+
+        assertRefused(() -> suit.keySet().remove(Type.LEGS));
+        assertRefused(() -> suit.values().clear());
+        assertRefused(() -> suit.entrySet().iterator().next()
+            .setValue(piece(Type.HEAD, 10)));
+
+        for (Map.Entry<Type,Armor> entry : suit.entrySet()) {
+            assertSame(suit.get(entry.getKey()), entry.getValue());
+        }
+
+        assertSame(legs, suit.get(Type.LEGS));
+        assertEquals(4, suit.stat(Stat.MOB));
+    }
+
+    @Test
+    public void totalsMatchPieces() {
+        var suit = suit(2);
+
+        assertEquals(8, suit.stat(Stat.MOB));
+        assertEquals(8, suit.total());
+        assertEquals(0, suit.stat(Stat.RES));
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    private static void assertRefused(Runnable mutation) {
+        try {
+            mutation.run();
+            fail("view allowed a change");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+    }
+
+    private static Suit suit(int mobility) {
+        return new Suit(
+            piece(Type.HEAD, mobility),
+            piece(Type.ARMS, mobility),
+            piece(Type.BODY, mobility),
+            piece(Type.LEGS, mobility));
+    }
+
+    private static Armor piece(Type type, int mobility) {
+        var armor = new Armor(type, Rarity.LEGEND, type + " " + mobility);
+        armor.put(Stat.MOB, mobility);
+        return armor;
+    }
+}
@@ -0,0 +1,229 @@
+package armory.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that reading a CSV file on several threads yields the same rows,
+ * line numbers, and errors as reading it on one, for files whose chunk
+ * boundaries fall among quoted line breaks, doubled quotes, CRLFs, and
+ * blank lines.
+ */
+public class CSVReaderTest {
+    //-------------------------------------------------------------------------
+    // Constants
+
+    private static final int MAX_THREADS = 24;
+
+    //-------------------------------------------------------------------------
+    // Instance Variables
+
+    private final List<File> files = new ArrayList<>();
+
+    @After
+    public void deleteFiles() {
+        files.forEach(File::delete);
+    }
+
+    //-------------------------------------------------------------------------
+    // Tests
+
+    @Test
+    public void quotedLineBreaks() throws Exception {
+        checkAllThreadCounts(csv(
+            "name,notes,count\n",
+            "a,\"one\ntwo\",1\n",
+            "b,\"\n\n\n\",2\n",
+            "\"c\nc\",x,3\n",
+            "d,\"line,with,commas\nand more\",4\n"));
+    }
+
+    @Test
+    public void doubledQuotes() throws Exception {
+        checkAllThreadCounts(csv(
+            "name,notes\n",
+            "a,\"say \"\"hi\"\"\"\n",
+            "b,\"\"\"\n\"\"\"\n",
+            "c,\"\"\n",
+            "d,\"\"\"\"\n",
+            "e,\"x\"\",\n\"\"y\"\n"));
+    }
+
+    @Test
+    public void crlfAndBlankLines() throws Exception {
+        checkAllThreadCounts(csv(
+            "\n\r\n",
+            "name,value\r\n",
+            "a,1\r\n",
+            "\r\n",
+            "b,\"two\r\nlines\"\r\n",
+            "\n",
+            "\r\n\r\n",
+            "c,3\n",
+            "d,4"));
+    }
+
+    @Test
+    public void byteOrderMark() throws Exception {
+        checkAllThreadCounts(csv("\uFEFFname,value\n", "a,1\n", "b,2\n"));
+    }
+
+    @Test
+    public void crlfBlankLinesAreSkipped() throws Exception {
+        var file = csv("name,value\r\n", "a,1\r\n", "\r\n", "b,2\r\n", "\r\n");
+
+        assertEquals(List.of("2: a|1", "4: b|2"), serial(file));
+    }
+
+    @Test
+    public void randomFiles() throws Exception {
+        for (long seed = 1; seed <= 20; seed++) {
+            checkAllThreadCounts(randomCsv(new Random(seed), 3, 40));
+        }
+    }
+
+    @Test
+    public void errorsMatch() throws Exception {
+        checkAllThreadCounts(csv(
+            "name,value\n", "a,\"1\n2\"\n", "b\n", "c,3\n", "d,4,5\n"));
+        checkAllThreadCounts(csv(
+            "name,value\n", "a,1\n", "b,\"2\n", "c,3\n"));
+        checkAllThreadCounts(csv(
+            "name,value\n", "a,1\n", "b,\"2\"x\n", "c,3\n"));
+    }
+
+    @Test
+    public void onlyBlankLines() throws Exception {
+        var file = csv("\n\r\n\n");
+
+        for (int threads = 1; threads <= 4; threads++) {
+            assertEquals(List.of(), parallel(file, threads));
+        }
+    }
+
+    //-------------------------------------------------------------------------
+    // Helpers
+
+    // Checks the parallel reads against the serial read, for every number
+    // of threads from 1 to MAX_THREADS.
+    private void checkAllThreadCounts(File file) throws IOException {
+        var expected = serial(file);
+
+        for (int threads = 1; threads <= MAX_THREADS; threads++) {
+            assertEquals(threads + " threads", expected, parallel(file, threads));
+        }
+    }
+
+    // Reads the file on one thread, returning each row as its line number
+    // and values, or just the error.
+    private static List<String> serial(File file) throws IOException {
+        var collector = new Collector();
+
+        try {
+            CSVReader.read(file, collector);
+        } catch (CSVReader.CSVException ex) {
+            return List.of(ex.getMessage());
+        }
+
+        return collector.rows;
+    }
+
+    private static List<String> parallel(File file, int threads)
+        throws IOException
+    {
+        var result = new ArrayList<String>();
+
+        try {
+            for (var collector : CSVReader.read(file, threads, Collector::new)) {
+                result.addAll(collector.rows);
+            }
+        } catch (CSVReader.CSVException ex) {
+            return List.of(ex.getMessage());
+        }
+
+        return result;
+    }
+
+    private static class Collector implements CSVReader.RowHandler {
+        final List<String> rows = new ArrayList<>();
+
+        @Override
+        public void handle(CSVReader.Row row) {
+            var values = new ArrayList<String>();
+
+            for (int i = 0; i < row.columns().size(); i++) {
+                values.add(row.get(i));
+            }
+
+            rows.add(row.lineNumber() + ": " + String.join("|", values));
+        }
+    }
+
+    private File csv(String... lines) throws IOException {
+        var file = File.createTempFile("csvreader", ".csv");
+        files.add(file);
+        Files.writeString(file.toPath(), String.join("", lines),
+            StandardCharsets.UTF_8);
+        return file;
+    }
+
+    // A file of random rows whose values mix plain text, commas, quotes,
+    // and both kinds of line break, with occasional blank lines.
+    private File randomCsv(Random random, int columns, int rows)
+        throws IOException
+    {
+        var lines = new ArrayList<String>();
+        var header = new ArrayList<String>();
+
+        for (int c = 0; c < columns; c++) {
+            header.add("col" + c);
+        }
+
+        lines.add(String.join(",", header) + "\n");
+
+        for (int r = 0; r < rows; r++) {
+            if (random.nextInt(5) == 0) {
+                lines.add(random.nextBoolean() ? "\n" : "\r\n");
+            }
+
+            var values = new ArrayList<String>();
+
+            for (int c = 0; c < columns; c++) {
+                values.add(randomValue(random));
+            }
+
+            lines.add(String.join(",", values) +
+                (random.nextBoolean() ? "\n" : "\r\n"));
+        }
+
+        return csv(lines.toArray(new String[0]));
+    }
+
+    private static String randomValue(Random random) {
+        var pieces = new String[] {"x", "yz", ",", "\"", "\n", "\r\n", "\u00e9"};
+        var text = new StringBuilder();
+        var length = random.nextInt(6);
+
+        for (int i = 0; i < length; i++) {
+            text.append(pieces[random.nextInt(pieces.length)]);
+        }
+
+        var value = text.toString();
+
+        if (value.matches("[xyz\u00e9]*")) {
+            return value;
+        }
+
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}